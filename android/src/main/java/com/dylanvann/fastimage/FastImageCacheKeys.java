@@ -0,0 +1,111 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.util.Util;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives the keys and files Glide uses for a url in its disk cache, so cache entries can be
+ * inspected without starting a Glide request.
+ */
+class FastImageCacheKeys {
+    // DiskLruCache stores the single value of an entry in "<key>.0".
+    private static final String ENTRY_FILE_SUFFIX = ".0";
+
+    static File getDiskCacheDir(@NonNull Context context) {
+        return FastImageGlideConfig.getDiskCacheDir(context);
+    }
+
+    /**
+     * Same digest Glide's SafeKeyGenerator computes for the DataCacheKey of the url, which holds
+     * the original (untransformed) bytes.
+     */
+    @NonNull
+    static String getDataCacheKey(@NonNull GlideUrl url, @Nullable Key signature) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        new DataKey(url, signature).updateDiskCacheKey(messageDigest);
+        return Util.sha256BytesToHex(messageDigest.digest());
+    }
+
+    /**
+     * @return a key that stands for the url's DataCacheKey, to write the original bytes to the
+     * disk cache outside of a Glide request.
+     */
+    @NonNull
+    static Key getDataKey(@NonNull GlideUrl url, @Nullable Key signature) {
+        return new DataKey(url, signature);
+    }
+
+    /**
+     * @return whether the file holds a committed cache entry, as opposed to the journal or a
+     * temporary file.
+     */
+    static boolean isEntryFile(@NonNull File file) {
+        return file.getName().endsWith(ENTRY_FILE_SUFFIX);
+    }
+
+    @NonNull
+    static File getDataCacheFile(@NonNull Context context, @NonNull GlideUrl url, @Nullable Key signature) {
+        File directory = FastImageDiskCache.forSignature(context, signature).getDirectory();
+        return getEntryFile(directory, getDataCacheKey(url, signature));
+    }
+
+    @NonNull
+    static File getEntryFile(@NonNull File directory, @NonNull String safeKey) {
+        return new File(directory, safeKey + ENTRY_FILE_SUFFIX);
+    }
+
+    // Same digest and description as Glide's package-private DataCacheKey.
+    private static final class DataKey implements Key {
+        private final GlideUrl url;
+        @Nullable
+        private final Key signature;
+
+        DataKey(GlideUrl url, @Nullable Key signature) {
+            this.url = url;
+            this.signature = signature;
+        }
+
+        @Override
+        public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+            url.updateDiskCacheKey(messageDigest);
+            if (signature != null) {
+                signature.updateDiskCacheKey(messageDigest);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DataKey)) {
+                return false;
+            }
+            DataKey other = (DataKey) o;
+            return url.equals(other.url) && Util.bothNullOrEqual(signature, other.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + (signature == null ? 0 : signature.hashCode());
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "DataCacheKey{sourceKey=" + url + ", signature=" + signature + '}';
+        }
+    }
+}
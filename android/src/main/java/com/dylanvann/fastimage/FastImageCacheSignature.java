@@ -0,0 +1,122 @@
+package com.dylanvann.fastimage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.util.Util;
+
+import java.security.MessageDigest;
+
+/**
+ * The signature every image is loaded with. It carries the model and the disk cache partition of
+ * the request to {@link FastImageDiskCache}, which is only given Glide's cache keys.
+ *
+ * Only the wrapped signature is part of the disk cache key, so entries keep the keys they had
+ * without this one. Glide's cache keys don't expose their signature, it is found by feeding the
+ * key to a digest that records it instead of hashing.
+ */
+class FastImageCacheSignature implements Key {
+    @NonNull
+    private final String model;
+    @Nullable
+    private final String partition;
+    @Nullable
+    private final Key signature;
+
+    /**
+     * @param model the model's string form, for urls their Glide cache key.
+     * @param partition the disk cache partition, null for the default one.
+     * @param signature the signature the image is loaded with otherwise, if any.
+     */
+    FastImageCacheSignature(@NonNull String model, @Nullable String partition, @Nullable Key signature) {
+        this.model = model;
+        this.partition = partition;
+        this.signature = signature;
+    }
+
+    /**
+     * @return the signature of a Glide cache key, null for keys of requests loaded without one.
+     */
+    @Nullable
+    static FastImageCacheSignature find(@NonNull Key key) {
+        if (key instanceof FastImageCacheSignature) {
+            return (FastImageCacheSignature) key;
+        }
+        Finder finder = new Finder();
+        key.updateDiskCacheKey(finder);
+        return finder.found;
+    }
+
+    @NonNull
+    String getModel() {
+        return model;
+    }
+
+    @Nullable
+    String getPartition() {
+        return partition;
+    }
+
+    @Override
+    public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+        if (messageDigest instanceof Finder && ((Finder) messageDigest).found == null) {
+            ((Finder) messageDigest).found = this;
+        }
+        if (signature != null) {
+            signature.updateDiskCacheKey(messageDigest);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FastImageCacheSignature)) {
+            return false;
+        }
+        FastImageCacheSignature other = (FastImageCacheSignature) o;
+        return model.equals(other.model)
+                && Util.bothNullOrEqual(partition, other.partition)
+                && Util.bothNullOrEqual(signature, other.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = model.hashCode();
+        hashCode = 31 * hashCode + (partition == null ? 0 : partition.hashCode());
+        return 31 * hashCode + (signature == null ? 0 : signature.hashCode());
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FastImageCacheSignature{partition=" + partition + ", signature=" + signature + '}';
+    }
+
+    // Records the first signature of a key, the bytes are dropped.
+    private static final class Finder extends MessageDigest {
+        @Nullable
+        FastImageCacheSignature found = null;
+
+        Finder() {
+            super("FastImageCacheSignature");
+        }
+
+        @Override
+        protected void engineUpdate(byte input) {
+        }
+
+        @Override
+        protected void engineUpdate(byte[] input, int offset, int len) {
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            return new byte[0];
+        }
+
+        @Override
+        protected void engineReset() {
+            found = null;
+        }
+    }
+}
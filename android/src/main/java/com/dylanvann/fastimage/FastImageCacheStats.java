@@ -0,0 +1,135 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+
+/**
+ * Counters for `FastImage.getCacheStats()`.
+ *
+ * Every finished Glide request is counted by where its resource came from, through a global
+ * request listener registered in {@link FastImageGlideModule}. Sizes are read from the caches
+ * when the stats are requested.
+ */
+class FastImageCacheStats {
+    private static final AtomicLong MEMORY_HITS = new AtomicLong();
+    private static final AtomicLong DISK_HITS = new AtomicLong();
+    private static final AtomicLong NETWORK_LOADS = new AtomicLong();
+    private static final AtomicLong LOCAL_LOADS = new AtomicLong();
+    private static final AtomicLong FAILURES = new AtomicLong();
+
+    @Nullable
+    private static volatile LruBitmapPool bitmapPool = null;
+
+    static void setBitmapPool(@NonNull LruBitmapPool pool) {
+        bitmapPool = pool;
+    }
+
+    static class Recorder implements RequestListener<Object> {
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, @Nullable Object model, @NonNull Target<Object> target, boolean isFirstResource) {
+            FAILURES.incrementAndGet();
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(@NonNull Object resource, @NonNull Object model, Target<Object> target, @NonNull DataSource dataSource, boolean isFirstResource) {
+            switch (dataSource) {
+                case MEMORY_CACHE:
+                    MEMORY_HITS.incrementAndGet();
+                    break;
+                case DATA_DISK_CACHE:
+                case RESOURCE_DISK_CACHE:
+                    DISK_HITS.incrementAndGet();
+                    break;
+                case LOCAL:
+                    LOCAL_LOADS.incrementAndGet();
+                    break;
+                case REMOTE:
+                default:
+                    NETWORK_LOADS.incrementAndGet();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Walks the disk cache directories, call off the UI thread.
+     */
+    @NonNull
+    static WritableMap snapshot(@NonNull Context context) {
+        WritableMap stats = Arguments.createMap();
+
+        FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+        stats.putDouble("memoryCacheSize", memoryCache == null ? 0 : memoryCache.getCurrentSize());
+        stats.putDouble("memoryCacheMaxSize", memoryCache == null ? 0 : memoryCache.getMaxSize());
+
+        LruBitmapPool pool = bitmapPool;
+        stats.putDouble("bitmapPoolSize", pool == null ? 0 : pool.getCurrentSize());
+        stats.putDouble("bitmapPoolMaxSize", pool == null ? 0 : pool.getMaxSize());
+
+        long diskCacheSize = 0;
+        int diskCacheEntries = 0;
+        WritableMap partitions = Arguments.createMap();
+        for (FastImageDiskCache diskCache : FastImageDiskCache.getAll(context)) {
+            long partitionSize = 0;
+            int partitionEntries = 0;
+            File[] files = diskCache.getDirectory().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    partitionSize += file.length();
+                    if (FastImageCacheKeys.isEntryFile(file)) {
+                        partitionEntries++;
+                    }
+                }
+            }
+            WritableMap partition = Arguments.createMap();
+            partition.putDouble("size", partitionSize);
+            partition.putDouble("maxSize", diskCache.getMaxSize());
+            partition.putInt("entries", partitionEntries);
+            partitions.putMap(diskCache.getName(), partition);
+            diskCacheSize += partitionSize;
+            diskCacheEntries += partitionEntries;
+        }
+        stats.putDouble("diskCacheSize", diskCacheSize);
+        stats.putInt("diskCacheEntries", diskCacheEntries);
+        stats.putMap("diskCachePartitions", partitions);
+
+        Cache httpCache = FastImageNetworkConfig.getHttpCache();
+        long httpCacheSize = 0;
+        if (httpCache != null) {
+            try {
+                httpCacheSize = httpCache.size();
+            } catch (Exception e) {
+                // The cache was closed or its journal is unreadable.
+            }
+        }
+        stats.putDouble("httpCacheSize", httpCacheSize);
+        stats.putDouble("httpCacheHits", httpCache == null ? 0 : httpCache.hitCount());
+
+        stats.putDouble("memoryHits", MEMORY_HITS.get());
+        stats.putDouble("diskHits", DISK_HITS.get());
+        stats.putDouble("networkLoads", NETWORK_LOADS.get());
+        stats.putDouble("localLoads", LOCAL_LOADS.get());
+        stats.putDouble("failures", FAILURES.get());
+        stats.putDouble("deduplicatedFetches", FastImageSingleFlightLoader.getDeduplicatedFetchCount());
+        stats.putInt("warmedEntries", FastImageHotSet.getWarmedCount());
+        stats.putInt("warmedEntriesUsed", FastImageHotSet.getUsedCount());
+        stats.putDouble("avoidedReloads", FastImageViewWithUrl.getAvoidedReloadCount());
+        return stats;
+    }
+}
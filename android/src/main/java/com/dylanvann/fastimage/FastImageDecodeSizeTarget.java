@@ -0,0 +1,72 @@
+package com.dylanvann.fastimage;
+
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.request.target.DrawableImageViewTarget;
+import com.bumptech.glide.request.target.SizeReadyCallback;
+
+/**
+ * Loads into the view like `into(ImageView)` does, but never asks Glide for a bitmap larger than
+ * `maxDecodeWidth` x `maxDecodeHeight` pixels. The view's size is scaled down to fit keeping its
+ * aspect ratio, the view scales the smaller bitmap up when drawing.
+ */
+class FastImageDecodeSizeTarget extends DrawableImageViewTarget {
+    private final int maxWidth;
+    private final int maxHeight;
+
+    // The callback Glide passed and the one registered with the view in its place.
+    @Nullable
+    private SizeReadyCallback pendingCallback = null;
+    @Nullable
+    private SizeReadyCallback pendingCappedCallback = null;
+
+    FastImageDecodeSizeTarget(@NonNull ImageView view, int maxWidth, int maxHeight) {
+        super(view);
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * @param maxWidth 0 for no limit.
+     * @param maxHeight 0 for no limit.
+     * @return the factor that fits the size within the limits, at most 1.
+     */
+    static float getScale(int width, int height, int maxWidth, int maxHeight) {
+        float scale = 1f;
+        if (maxWidth > 0 && width > maxWidth) {
+            scale = Math.min(scale, (float) maxWidth / width);
+        }
+        if (maxHeight > 0 && height > maxHeight) {
+            scale = Math.min(scale, (float) maxHeight / height);
+        }
+        return scale;
+    }
+
+    @Override
+    public void getSize(@NonNull final SizeReadyCallback cb) {
+        SizeReadyCallback capped = new SizeReadyCallback() {
+            @Override
+            public void onSizeReady(int width, int height) {
+                float scale = getScale(width, height, maxWidth, maxHeight);
+                cb.onSizeReady(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+            }
+        };
+        pendingCallback = cb;
+        pendingCappedCallback = capped;
+        super.getSize(capped);
+    }
+
+    @Override
+    public void removeCallback(@NonNull SizeReadyCallback cb) {
+        if (cb == pendingCallback && pendingCappedCallback != null) {
+            super.removeCallback(pendingCappedCallback);
+            pendingCallback = null;
+            pendingCappedCallback = null;
+        } else {
+            super.removeCallback(cb);
+        }
+    }
+}
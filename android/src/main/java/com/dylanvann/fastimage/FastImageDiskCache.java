@@ -0,0 +1,657 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.disklrucache.DiskLruCache;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.SafeKeyGenerator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Glide's disk cache, additionally indexed by model so all entries of an image can be evicted:
+ * the original bytes and every transformed variant (sizes, blur, ...).
+ *
+ * Works like Glide's DiskLruCacheWrapper. The index maps the model's string form to the safe keys
+ * written for it and is persisted in an append-only file next to the cache. Entries the LRU
+ * evicted on its own are dropped from the index when it is loaded.
+ *
+ * Models loaded with a `maxAge` get an expiry when their first entry is written, or when they are
+ * first requested with one if they were cached before, kept in a second append-only file. Expired models are removed when they are read and by a background sweep that
+ * removes a bounded number of them per run.
+ *
+ * Sources can name a partition configured in {@link FastImageGlideConfig}. Each partition is its
+ * own cache with its own size and LRU. Glide is given a single cache that routes every key to the
+ * partition named by the {@link FastImageCacheSignature} of its request.
+ */
+class FastImageDiskCache implements DiskCache {
+    private static final String TAG = "FastImageDiskCache";
+    private static final int APP_VERSION = 1;
+    private static final int VALUE_COUNT = 1;
+    private static final String INDEX_FILE = "fastimage_disk_index";
+    private static final String EXPIRY_FILE = "fastimage_disk_expiry";
+    // Written when a model's entries are removed, so an older expiry doesn't come back on load.
+    private static final long NO_EXPIRY = 0;
+    private static final long SWEEP_DELAY_MS = 30_000;
+    private static final long SWEEP_INTERVAL_MS = 60 * 60_000;
+    private static final int MAX_SWEEP_ENTRIES = 32;
+    // Max ages of models that were requested but not cached yet, least recently requested first.
+    private static final int MAX_PENDING_MAX_AGES = 256;
+    // Writes of the same key are serialized, different keys rarely share a lock.
+    private static final int LOCK_STRIPES = 32;
+
+    static final String DEFAULT_PARTITION = "default";
+
+    // Guarded by the class.
+    private static final Map<String, FastImageDiskCache> instances = new HashMap<>();
+    // Shared by the partitions, created when the first one is opened.
+    @Nullable
+    private static ScheduledExecutorService sweeper = null;
+
+    private final String name;
+    private final File directory;
+    private final long maxSize;
+    private final File indexFile;
+    private final File expiryFile;
+    private final SafeKeyGenerator safeKeyGenerator = new SafeKeyGenerator();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Max age in ms by model, registered by the requests that load them until their expiry is
+    // recorded.
+    private final Map<String, Long> maxAges = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_PENDING_MAX_AGES;
+        }
+    });
+
+    @Nullable
+    private DiskLruCache diskLruCache = null;
+    // Guarded by this.
+    @Nullable
+    private Map<String, Set<String>> index = null;
+    @Nullable
+    private FileWriter indexWriter = null;
+    // Expiry timestamps by model, loaded when the cache is opened. Written while holding this.
+    @Nullable
+    private volatile Map<String, Long> expiries = null;
+    @Nullable
+    private FileWriter expiryWriter = null;
+    private boolean sweepScheduled = false;
+
+    private FastImageDiskCache(String name, File directory, long maxSize) {
+        this.name = name;
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.indexFile = new File(directory.getParentFile(), INDEX_FILE);
+        this.expiryFile = new File(directory.getParentFile(), EXPIRY_FILE);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * The default partition, shared by Glide and the cache APIs.
+     */
+    @NonNull
+    static FastImageDiskCache get(@NonNull Context context) {
+        FastImageDiskCache cache = getPartition(context, DEFAULT_PARTITION);
+        if (cache == null) {
+            throw new IllegalStateException("Missing default disk cache partition");
+        }
+        return cache;
+    }
+
+    /**
+     * @return the partition, null when no partition with that name is configured.
+     */
+    @Nullable
+    static synchronized FastImageDiskCache getPartition(@NonNull Context context, @NonNull String name) {
+        FastImageDiskCache cache = instances.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        if (DEFAULT_PARTITION.equals(name)) {
+            cache = new FastImageDiskCache(name, FastImageCacheKeys.getDiskCacheDir(context), FastImageGlideConfig.getDiskCacheSize());
+        } else {
+            Long size = FastImageGlideConfig.getDiskCachePartitions().get(name);
+            if (size == null) {
+                return null;
+            }
+            cache = new FastImageDiskCache(name, FastImageGlideConfig.getDiskCachePartitionDir(context, name), size);
+        }
+        instances.put(name, cache);
+        return cache;
+    }
+
+    /**
+     * @return the default partition followed by every configured one.
+     */
+    @NonNull
+    static List<FastImageDiskCache> getAll(@NonNull Context context) {
+        List<FastImageDiskCache> caches = new ArrayList<>();
+        caches.add(get(context));
+        for (String partition : FastImageGlideConfig.getDiskCachePartitions().keySet()) {
+            FastImageDiskCache cache = getPartition(context, partition);
+            if (cache != null) {
+                caches.add(cache);
+            }
+        }
+        return caches;
+    }
+
+    /**
+     * @return the partition, or the default one when null or not configured.
+     */
+    @NonNull
+    static FastImageDiskCache forPartition(@NonNull Context context, @Nullable String partition) {
+        FastImageDiskCache cache = partition == null ? null : getPartition(context, partition);
+        return cache == null ? get(context) : cache;
+    }
+
+    /**
+     * @return the partition named by the signature, or the default one.
+     */
+    @NonNull
+    static FastImageDiskCache forSignature(@NonNull Context context, @Nullable Key signature) {
+        FastImageCacheSignature found = signature == null ? null : FastImageCacheSignature.find(signature);
+        return forPartition(context, found == null ? null : found.getPartition());
+    }
+
+    static DiskCache.Factory factory(@NonNull final Context context) {
+        return new DiskCache.Factory() {
+            @Nullable
+            @Override
+            public DiskCache build() {
+                return new Router(context);
+            }
+        };
+    }
+
+    @NonNull
+    String getName() {
+        return name;
+    }
+
+    @NonNull
+    File getDirectory() {
+        return directory;
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    private synchronized DiskLruCache getDiskLruCache() throws IOException {
+        if (diskLruCache == null) {
+            diskLruCache = DiskLruCache.open(directory, APP_VERSION, VALUE_COUNT, maxSize);
+            loadExpiries();
+            scheduleSweep();
+        }
+        return diskLruCache;
+    }
+
+    private Object lockFor(String safeKey) {
+        return locks[(safeKey.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    @Nullable
+    @Override
+    public File get(Key key) {
+        return get(key, getModel(key));
+    }
+
+    @Nullable
+    private File get(Key key, @Nullable String model) {
+        String safeKey = safeKeyGenerator.getSafeKey(key);
+        try {
+            DiskLruCache cache = getDiskLruCache();
+            if (model != null && isExpired(model)) {
+                expire(model);
+                return null;
+            }
+            DiskLruCache.Value value = cache.get(safeKey);
+            return value == null ? null : value.getFile(0);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to get from disk cache", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Key key, Writer writer) {
+        put(key, writer, getModel(key));
+    }
+
+    private void put(Key key, Writer writer, @Nullable String model) {
+        String safeKey = safeKeyGenerator.getSafeKey(key);
+        synchronized (lockFor(safeKey)) {
+            try {
+                DiskLruCache cache = getDiskLruCache();
+                if (cache.get(safeKey) != null) {
+                    return;
+                }
+                DiskLruCache.Editor editor = cache.edit(safeKey);
+                if (editor == null) {
+                    throw new IllegalStateException("Had two simultaneous puts for: " + safeKey);
+                }
+                try {
+                    if (writer.write(editor.getFile(0))) {
+                        editor.commit();
+                        record(safeKey, model);
+                        recordExpiry(model);
+                    }
+                } finally {
+                    editor.abortUnlessCommitted();
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to put to disk cache", e);
+            }
+        }
+    }
+
+    @Override
+    public void delete(Key key) {
+        try {
+            getDiskLruCache().remove(safeKeyGenerator.getSafeKey(key));
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to delete from disk cache", e);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        try {
+            getDiskLruCache().delete();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to clear disk cache", e);
+        } finally {
+            diskLruCache = null;
+            closeIndexWriter();
+            index = new HashMap<>();
+            indexFile.delete();
+            closeExpiryWriter();
+            expiries = new ConcurrentHashMap<>();
+            expiryFile.delete();
+        }
+    }
+
+    /**
+     * Removes every entry written for the model and forgets its max age.
+     *
+     * @param model the model's string form, for urls their Glide cache key.
+     * @return the number of bytes freed.
+     */
+    long evict(@NonNull String model) {
+        maxAges.remove(model);
+        return removeEntries(model);
+    }
+
+    // The max age is kept, an expired model that is loaded again gets a new expiry.
+    private long removeEntries(String model) {
+        Set<String> safeKeys;
+        synchronized (this) {
+            Set<String> indexed = getIndex().remove(model);
+            safeKeys = indexed == null ? Collections.<String>emptySet() : indexed;
+            forgetExpiry(model);
+        }
+        long freed = 0;
+        for (String safeKey : safeKeys) {
+            synchronized (lockFor(safeKey)) {
+                try {
+                    DiskLruCache cache = getDiskLruCache();
+                    DiskLruCache.Value value = cache.get(safeKey);
+                    if (value != null) {
+                        long length = value.getFile(0).length();
+                        if (cache.remove(safeKey)) {
+                            freed += length;
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to evict from disk cache", e);
+                }
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Sets how long entries of the model are kept after their first entry is written. Entries
+     * that are already written keep their expiry, cached entries without one expire from now.
+     * Called with the options of every request, an expired model is also dropped from the memory
+     * cache so it is fetched again.
+     *
+     * @param model the model's string form, for urls their Glide cache key.
+     */
+    void setMaxAge(@NonNull final String model, long maxAgeMs) {
+        Map<String, Long> loaded = expiries;
+        Long expiresAt = loaded == null ? null : loaded.get(model);
+        if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+            return;
+        }
+        maxAges.put(model, maxAgeMs);
+        if (expiresAt != null) {
+            FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+            if (memoryCache != null) {
+                memoryCache.evictModel(model);
+            }
+        } else if (loaded != null) {
+            // Off the UI thread, the index may still have to be read.
+            getSweeper().execute(new Runnable() {
+                @Override
+                public void run() {
+                    recordExpiryIfCached(model);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return whether the model's entries outlived their max age. False until the cache was
+     * opened by the first load.
+     */
+    boolean isExpired(@NonNull String model) {
+        Map<String, Long> loaded = expiries;
+        Long expiresAt = loaded == null ? null : loaded.get(model);
+        return expiresAt != null && expiresAt <= System.currentTimeMillis();
+    }
+
+    private void expire(String model) {
+        long freed = removeEntries(model);
+        FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+        if (memoryCache != null) {
+            memoryCache.evictModel(model);
+        }
+        Log.d(TAG, "Expired " + model + ", freed " + freed + " bytes");
+    }
+
+    // Removes at most MAX_SWEEP_ENTRIES expired models per run, the next run picks up the rest.
+    private void sweep() {
+        Map<String, Long> loaded = expiries;
+        if (loaded == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : loaded.entrySet()) {
+            if (entry.getValue() <= now) {
+                expired.add(entry.getKey());
+                if (expired.size() == MAX_SWEEP_ENTRIES) {
+                    break;
+                }
+            }
+        }
+        for (String model : expired) {
+            expire(model);
+        }
+    }
+
+    private void scheduleSweep() {
+        if (sweepScheduled) {
+            return;
+        }
+        sweepScheduled = true;
+        getSweeper().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sweep();
+                } catch (Exception e) {
+                    Log.w(TAG, "Unable to sweep expired entries", e);
+                }
+            }
+        }, SWEEP_DELAY_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static synchronized ScheduledExecutorService getSweeper() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, TAG));
+        }
+        return sweeper;
+    }
+
+    private synchronized void recordExpiry(@Nullable String model) {
+        Map<String, Long> loaded = expiries;
+        Long maxAge = model == null || loaded == null ? null : maxAges.remove(model);
+        if (maxAge == null || maxAge <= 0 || loaded.containsKey(model)) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + maxAge;
+        loaded.put(model, expiresAt);
+        appendExpiry(model, expiresAt);
+    }
+
+    // For models cached before they were requested with a max age.
+    private synchronized void recordExpiryIfCached(String model) {
+        if (maxAges.containsKey(model) && getIndex().containsKey(model)) {
+            recordExpiry(model);
+        }
+    }
+
+    private synchronized void forgetExpiry(String model) {
+        Map<String, Long> loaded = expiries;
+        if (loaded != null && loaded.remove(model) != null) {
+            appendExpiry(model, NO_EXPIRY);
+        }
+    }
+
+    private void appendExpiry(String model, long expiresAt) {
+        try {
+            if (expiryWriter == null) {
+                expiryWriter = new FileWriter(expiryFile, true);
+            }
+            expiryWriter.write(Long.toString(expiresAt) + ' ' + model + '\n');
+            expiryWriter.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write disk cache expiries", e);
+            closeExpiryWriter();
+        }
+    }
+
+    // Loads the expiries of models that are still in the cache and compacts their file.
+    private synchronized void loadExpiries() {
+        Map<String, Long> loaded = new ConcurrentHashMap<>();
+        if (expiryFile.exists()) {
+            Map<String, Set<String>> entries = getIndex();
+            try (BufferedReader reader = new BufferedReader(new FileReader(expiryFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(' ');
+                    if (separator <= 0) {
+                        continue;
+                    }
+                    String model = line.substring(separator + 1);
+                    long expiresAt;
+                    try {
+                        expiresAt = Long.parseLong(line.substring(0, separator));
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    if (expiresAt == NO_EXPIRY || !entries.containsKey(model)) {
+                        loaded.remove(model);
+                    } else {
+                        loaded.put(model, expiresAt);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to read disk cache expiries", e);
+            }
+
+            closeExpiryWriter();
+            try (FileWriter writer = new FileWriter(expiryFile, false)) {
+                for (Map.Entry<String, Long> entry : loaded.entrySet()) {
+                    writer.write(Long.toString(entry.getValue()) + ' ' + entry.getKey() + '\n');
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to compact disk cache expiries", e);
+            }
+        }
+        expiries = loaded;
+
+        List<String> pending;
+        synchronized (maxAges) {
+            pending = new ArrayList<>(maxAges.keySet());
+        }
+        for (String model : pending) {
+            recordExpiryIfCached(model);
+        }
+    }
+
+    private void closeExpiryWriter() {
+        if (expiryWriter != null) {
+            try {
+                expiryWriter.close();
+            } catch (IOException e) {
+                // Nothing left to flush.
+            }
+            expiryWriter = null;
+        }
+    }
+
+    private synchronized void record(String safeKey, @Nullable String model) {
+        if (model == null) {
+            return;
+        }
+        Map<String, Set<String>> entries = getIndex();
+        Set<String> safeKeys = entries.get(model);
+        if (safeKeys == null) {
+            safeKeys = new HashSet<>();
+            entries.put(model, safeKeys);
+        }
+        if (!safeKeys.add(safeKey)) {
+            return;
+        }
+        try {
+            if (indexWriter == null) {
+                indexWriter = new FileWriter(indexFile, true);
+            }
+            indexWriter.write(safeKey + ' ' + model + '\n');
+            indexWriter.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write disk cache index", e);
+            closeIndexWriter();
+        }
+    }
+
+    // Loads the index, dropping entries that are no longer in the cache, and compacts its file.
+    private synchronized Map<String, Set<String>> getIndex() {
+        if (index != null) {
+            return index;
+        }
+        index = new HashMap<>();
+        if (!indexFile.exists()) {
+            return index;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0) {
+                    continue;
+                }
+                String safeKey = line.substring(0, separator);
+                String model = line.substring(separator + 1);
+                if (!FastImageCacheKeys.getEntryFile(directory, safeKey).exists()) {
+                    continue;
+                }
+                Set<String> safeKeys = index.get(model);
+                if (safeKeys == null) {
+                    safeKeys = new HashSet<>();
+                    index.put(model, safeKeys);
+                }
+                safeKeys.add(safeKey);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read disk cache index", e);
+        }
+
+        closeIndexWriter();
+        try (FileWriter writer = new FileWriter(indexFile, false)) {
+            for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                for (String safeKey : entry.getValue()) {
+                    writer.write(safeKey + ' ' + entry.getKey() + '\n');
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to compact disk cache index", e);
+        }
+        return index;
+    }
+
+    private void closeIndexWriter() {
+        if (indexWriter != null) {
+            try {
+                indexWriter.close();
+            } catch (IOException e) {
+                // Nothing left to flush.
+            }
+            indexWriter = null;
+        }
+    }
+
+    @Nullable
+    private static String getModel(Key key) {
+        FastImageCacheSignature signature = FastImageCacheSignature.find(key);
+        return signature == null ? null : signature.getModel();
+    }
+
+    /**
+     * The cache Glide is set up with, it routes keys to the partition of their request.
+     */
+    private static class Router implements DiskCache {
+        private final Context context;
+
+        Router(Context context) {
+            this.context = context;
+        }
+
+        @Nullable
+        @Override
+        public File get(Key key) {
+            FastImageCacheSignature signature = FastImageCacheSignature.find(key);
+            return route(signature).get(key, signature == null ? null : signature.getModel());
+        }
+
+        @Override
+        public void put(Key key, Writer writer) {
+            FastImageCacheSignature signature = FastImageCacheSignature.find(key);
+            route(signature).put(key, writer, signature == null ? null : signature.getModel());
+        }
+
+        @Override
+        public void delete(Key key) {
+            route(FastImageCacheSignature.find(key)).delete(key);
+        }
+
+        private FastImageDiskCache route(@Nullable FastImageCacheSignature signature) {
+            return forPartition(context, signature == null ? null : signature.getPartition());
+        }
+
+        @Override
+        public void clear() {
+            for (FastImageDiskCache cache : getAll(context)) {
+                cache.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.load.engine.executor.GlideExecutor;
+import com.bumptech.glide.request.RequestOptions;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Cache sizes, decoding defaults and executors Glide is set up with.
+ *
+ * Defaults come from the Gradle `ext` properties of the app (see docs/glide-config.md) and can be
+ * overridden natively, e.g. in `MainApplication.onCreate`, before the first image is loaded.
+ * Apps with their own `AppGlideModule` call {@link #applyOptions(Context, GlideBuilder)} from it.
+ */
+public final class FastImageGlideConfig {
+    public static final String DISK_CACHE_INTERNAL = "internal";
+    public static final String DISK_CACHE_EXTERNAL = "external";
+    private static final String TAG = "FastImageGlideConfig";
+    private static final String PARTITIONS_DIR = "fastimage_partitions";
+
+    // 0 keeps Glide's default for sizes and screen multipliers.
+    private static long memoryCacheSize = BuildConfig.FAST_IMAGE_MEMORY_CACHE_SIZE;
+    private static float memoryCacheScreens = BuildConfig.FAST_IMAGE_MEMORY_CACHE_SCREENS;
+    private static long bitmapPoolSize = BuildConfig.FAST_IMAGE_BITMAP_POOL_SIZE;
+    private static float bitmapPoolScreens = BuildConfig.FAST_IMAGE_BITMAP_POOL_SCREENS;
+    private static long diskCacheSize = BuildConfig.FAST_IMAGE_DISK_CACHE_SIZE;
+    private static String diskCacheLocation = BuildConfig.FAST_IMAGE_DISK_CACHE_LOCATION;
+    private static DecodeFormat decodeFormat = DecodeFormat.valueOf(BuildConfig.FAST_IMAGE_DECODE_FORMAT);
+    // 0 keeps Glide's thread counts.
+    private static int sourceThreads = BuildConfig.FAST_IMAGE_SOURCE_THREADS;
+    private static int diskCacheThreads = BuildConfig.FAST_IMAGE_DISK_CACHE_THREADS;
+    private static int animationThreads = BuildConfig.FAST_IMAGE_ANIMATION_THREADS;
+    private static int threadPriority = BuildConfig.FAST_IMAGE_THREAD_PRIORITY;
+    private static boolean unlimitedNetworkExecutor = BuildConfig.FAST_IMAGE_UNLIMITED_NETWORK_EXECUTOR;
+    private static float lowMemoryCacheFraction = BuildConfig.FAST_IMAGE_LOW_MEMORY_CACHE_FRACTION;
+    // Negative keeps loading offscreen views.
+    private static long offscreenGracePeriodMs = BuildConfig.FAST_IMAGE_OFFSCREEN_GRACE_PERIOD_MS;
+    // Disk cache partitions by name with their size in bytes.
+    private static final Map<String, Long> diskCachePartitions = parsePartitions(BuildConfig.FAST_IMAGE_DISK_CACHE_PARTITIONS);
+
+    /**
+     * Priority of Glide's own thread factory, background but slightly more favorable.
+     */
+    public static final int DEFAULT_THREAD_PRIORITY =
+            Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE;
+
+    private FastImageGlideConfig() {
+    }
+
+    /**
+     * Memory cache size in bytes, takes precedence over the screens multiplier.
+     */
+    public static synchronized void setMemoryCacheSize(long bytes) {
+        memoryCacheSize = bytes;
+    }
+
+    /**
+     * Memory cache size as a number of full screen ARGB_8888 images.
+     */
+    public static synchronized void setMemoryCacheScreens(float screens) {
+        memoryCacheScreens = screens;
+    }
+
+    /**
+     * Bitmap pool size in bytes, takes precedence over the screens multiplier.
+     */
+    public static synchronized void setBitmapPoolSize(long bytes) {
+        bitmapPoolSize = bytes;
+    }
+
+    public static synchronized void setBitmapPoolScreens(float screens) {
+        bitmapPoolScreens = screens;
+    }
+
+    public static synchronized void setDiskCacheSize(long bytes) {
+        diskCacheSize = bytes;
+    }
+
+    /**
+     * @param location {@link #DISK_CACHE_INTERNAL} or {@link #DISK_CACHE_EXTERNAL}, the external
+     *                 cache directory falls back to the internal one when it is unavailable.
+     */
+    public static synchronized void setDiskCacheLocation(@NonNull String location) {
+        diskCacheLocation = location;
+    }
+
+    public static synchronized void setDecodeFormat(@NonNull DecodeFormat format) {
+        decodeFormat = format;
+    }
+
+    /**
+     * Threads fetching and decoding images that are not in the disk cache.
+     */
+    public static synchronized void setSourceThreads(int count) {
+        sourceThreads = count;
+    }
+
+    /**
+     * Threads decoding images from the disk cache.
+     */
+    public static synchronized void setDiskCacheThreads(int count) {
+        diskCacheThreads = count;
+    }
+
+    public static synchronized void setAnimationThreads(int count) {
+        animationThreads = count;
+    }
+
+    /**
+     * Linux priority of all Glide threads, see {@link Process#setThreadPriority(int)}. Higher
+     * values leave more room for the UI and JS threads.
+     */
+    public static synchronized void setThreadPriority(int priority) {
+        threadPriority = priority;
+    }
+
+    /**
+     * Loads images that are not in the disk cache on Glide's unbounded executor, so slow downloads
+     * don't hold up the source threads. Glide decodes on the thread that fetched, so decoding of
+     * these images is unbounded too, only disk cache loads stay on their bounded executor.
+     */
+    public static synchronized void setUnlimitedNetworkExecutor(boolean enabled) {
+        unlimitedNetworkExecutor = enabled;
+    }
+
+    /**
+     * Fraction of its size the memory cache shrinks to while the system runs low on memory, see
+     * {@link FastImageMemoryPolicy}. 1 keeps the full size.
+     */
+    public static synchronized void setLowMemoryCacheFraction(float fraction) {
+        lowMemoryCacheFraction = fraction;
+    }
+
+    /**
+     * Time a view may be detached or hidden before its running load is cancelled. The load is
+     * resumed once the view is back. Negative values keep loading offscreen views.
+     */
+    public static synchronized void setOffscreenGracePeriodMs(long gracePeriodMs) {
+        offscreenGracePeriodMs = gracePeriodMs;
+    }
+
+    static synchronized long getOffscreenGracePeriodMs() {
+        return offscreenGracePeriodMs;
+    }
+
+    /**
+     * Adds a disk cache partition sources can name with `cachePartition`. Each partition has its
+     * own LRU, so images in one partition never evict images in another.
+     *
+     * @param name letters, digits, `_` and `-`.
+     * @param bytes size of the partition, on top of the default disk cache.
+     */
+    public static synchronized void setDiskCachePartition(@NonNull String name, long bytes) {
+        if (!isValidPartitionName(name)) {
+            throw new IllegalArgumentException("Invalid disk cache partition name: " + name);
+        }
+        diskCachePartitions.put(name, bytes);
+    }
+
+    @NonNull
+    static synchronized Map<String, Long> getDiskCachePartitions() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(diskCachePartitions));
+    }
+
+    @NonNull
+    static synchronized File getDiskCachePartitionDir(@NonNull Context context, @NonNull String name) {
+        File partitionsDir = new File(getDiskCacheDir(context).getParentFile(), PARTITIONS_DIR);
+        // Index files are written next to the cache directory, each partition gets its own parent.
+        return new File(new File(partitionsDir, name), DiskCache.Factory.DEFAULT_DISK_CACHE_DIR);
+    }
+
+    private static boolean isValidPartitionName(String name) {
+        return !name.isEmpty() && name.matches("[A-Za-z0-9_-]+");
+    }
+
+    // "avatars:20971520,static:10485760"
+    private static Map<String, Long> parsePartitions(String value) {
+        Map<String, Long> partitions = new LinkedHashMap<>();
+        for (String partition : value.split(",")) {
+            int separator = partition.indexOf(':');
+            if (separator < 0) {
+                continue;
+            }
+            String name = partition.substring(0, separator).trim();
+            try {
+                long size = Long.parseLong(partition.substring(separator + 1).trim());
+                if (isValidPartitionName(name) && size > 0) {
+                    partitions.put(name, size);
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // Logged below.
+            }
+            Log.w(TAG, "Ignoring invalid disk cache partition: " + partition);
+        }
+        return partitions;
+    }
+
+    static synchronized long getDiskCacheSize() {
+        return diskCacheSize;
+    }
+
+    @NonNull
+    static synchronized File getDiskCacheDir(@NonNull Context context) {
+        File cacheDir = null;
+        if (DISK_CACHE_EXTERNAL.equals(diskCacheLocation)) {
+            cacheDir = context.getExternalCacheDir();
+        }
+        if (cacheDir == null) {
+            cacheDir = context.getCacheDir();
+        }
+        return new File(cacheDir, DiskCache.Factory.DEFAULT_DISK_CACHE_DIR);
+    }
+
+    /**
+     * Sets up Glide's memory cache, bitmap pool, disk cache and default decode format, together
+     * with the hooks cache queries, eviction, stats and the trim memory policy rely on.
+     */
+    public static synchronized void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator.Builder calculatorBuilder = new MemorySizeCalculator.Builder(context);
+        if (memoryCacheScreens > 0) {
+            calculatorBuilder.setMemoryCacheScreens(memoryCacheScreens);
+        }
+        if (bitmapPoolScreens > 0) {
+            calculatorBuilder.setBitmapPoolScreens(bitmapPoolScreens);
+        }
+        MemorySizeCalculator calculator = calculatorBuilder.build();
+
+        long memorySize = memoryCacheSize > 0 ? memoryCacheSize : calculator.getMemoryCacheSize();
+        long poolSize = bitmapPoolSize > 0 ? bitmapPoolSize : calculator.getBitmapPoolSize();
+
+        builder.setMemoryCache(new FastImageMemoryCache(memorySize));
+        LruBitmapPool bitmapPool = new LruBitmapPool(poolSize);
+        FastImageCacheStats.setBitmapPool(bitmapPool);
+        builder.setBitmapPool(bitmapPool);
+        context.getApplicationContext().registerComponentCallbacks(
+                new FastImageMemoryPolicy(context, bitmapPool, lowMemoryCacheFraction));
+        builder.setDiskCache(FastImageDiskCache.factory(context.getApplicationContext()));
+        builder.setDefaultRequestOptions(new RequestOptions()
+                .format(decodeFormat)
+                .useUnlimitedSourceGeneratorsPool(unlimitedNetworkExecutor));
+        applyExecutors(builder);
+        builder.addGlobalRequestListener(new FastImageCacheStats.Recorder());
+    }
+
+    private static void applyExecutors(GlideBuilder builder) {
+        boolean customPriority = threadPriority != DEFAULT_THREAD_PRIORITY;
+        if (sourceThreads > 0 || customPriority) {
+            builder.setSourceExecutor(configure(GlideExecutor.newSourceBuilder(), sourceThreads).build());
+        }
+        if (diskCacheThreads > 0 || customPriority) {
+            builder.setDiskCacheExecutor(configure(GlideExecutor.newDiskCacheBuilder(), diskCacheThreads).build());
+        }
+        if (animationThreads > 0 || customPriority) {
+            builder.setAnimationExecutor(configure(GlideExecutor.newAnimationBuilder(), animationThreads).build());
+        }
+    }
+
+    private static GlideExecutor.Builder configure(GlideExecutor.Builder executorBuilder, int threads) {
+        if (threads > 0) {
+            executorBuilder.setThreadCount(threads);
+        }
+        final int priority = threadPriority;
+        return executorBuilder.setThreadFactory(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(priority);
+                        runnable.run();
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    static synchronized String dump() {
+        return String.format(Locale.US,
+                "FastImage Glide config {memoryCacheSize=%d, memoryCacheScreens=%.1f, bitmapPoolSize=%d, "
+                        + "bitmapPoolScreens=%.1f, diskCacheSize=%d, diskCacheLocation=%s, decodeFormat=%s, "
+                        + "sourceThreads=%d, diskCacheThreads=%d, animationThreads=%d, threadPriority=%d, "
+                        + "unlimitedNetworkExecutor=%b, lowMemoryCacheFraction=%.2f, offscreenGracePeriodMs=%d, diskCachePartitions=%s}",
+                memoryCacheSize, memoryCacheScreens, bitmapPoolSize,
+                bitmapPoolScreens, diskCacheSize, diskCacheLocation, decodeFormat,
+                sourceThreads, diskCacheThreads, animationThreads, threadPriority,
+                unlimitedNetworkExecutor, lowMemoryCacheFraction, offscreenGracePeriodMs, diskCachePartitions);
+    }
+}
@@ -0,0 +1,410 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.widget.ImageView.ScaleType;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records which images are displayed most often, at which size, and decodes them into the memory
+ * cache at the next launch before JS renders the first screen.
+ *
+ * Opt-in with a warmup budget (number of entries) > 0. The hot set is kept in a small JSON file
+ * written off the main thread a few seconds after the last recorded display. Twice the budget of
+ * entries is kept, in memory and in the file.
+ *
+ * Headers often carry credentials and are never written. Entries whose source had headers are
+ * only warmed up with the headers set through {@link #setWarmupHeaders(Map)}.
+ */
+public final class FastImageHotSet {
+    private static final String TAG = "FastImageHotSet";
+    private static final String FILE_NAME = "fastimage_hot_set.json";
+    private static final long WRITE_DELAY_MS = 5_000;
+    // More entries than the budget are kept so images can climb into the top entries over time.
+    private static final int KEPT_ENTRIES_FACTOR = 2;
+    private static final String HEADERS_KEY = "headers";
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, TAG));
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Set<String> WARMED = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final Set<String> USED = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicInteger WARMED_COUNT = new AtomicInteger();
+    private static final AtomicBoolean STARTED = new AtomicBoolean(false);
+
+    private static volatile int budget = BuildConfig.FAST_IMAGE_WARMUP_ENTRIES;
+    @Nullable
+    private static volatile Map<String, String> warmupHeaders = null;
+    @Nullable
+    private static ScheduledFuture<?> pendingWrite = null;
+    @Nullable
+    private static File file = null;
+
+    private FastImageHotSet() {
+    }
+
+    /**
+     * Number of entries decoded at launch, 0 disables recording and warmup.
+     */
+    public static void setWarmupEntries(int entries) {
+        budget = entries;
+    }
+
+    /**
+     * Headers attached to the entries that were displayed with headers, when they are warmed up.
+     * Without them those entries are skipped. Call before {@link #warmUp(Context)}.
+     */
+    public static void setWarmupHeaders(@Nullable Map<String, String> headers) {
+        warmupHeaders = headers == null ? null : new HashMap<>(headers);
+    }
+
+    static boolean isEnabled() {
+        return budget > 0;
+    }
+
+    /**
+     * Loads the hot set and decodes its top entries into the memory cache. Runs once, it is
+     * called when the React instance creates the view manager and can be called earlier, e.g. from
+     * `MainApplication.onCreate`.
+     */
+    public static void warmUp(@NonNull Context context) {
+        if (!isEnabled() || !STARTED.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(appContext);
+                List<Entry> top = getTop(budget);
+                if (top.isEmpty()) {
+                    return;
+                }
+                RequestManager requestManager = Glide.with(appContext);
+                for (Entry entry : top) {
+                    JavaOnlyMap source = getWarmupSource(entry);
+                    if (source == null) {
+                        continue;
+                    }
+                    try {
+                        FastImagePreloadRequest request = FastImagePreloadRequest.create(
+                                appContext, requestManager, source, entry.width, entry.height, entry.scaleType);
+                        if (request != null) {
+                            request.start(null);
+                            WARMED.add(entry.key);
+                            WARMED_COUNT.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        Log.w(TAG, "Unable to warm up " + entry.key, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the entry's source, with the warmup headers if it had headers, null when it had
+     * headers and there are no warmup headers.
+     */
+    @Nullable
+    private static JavaOnlyMap getWarmupSource(Entry entry) {
+        if (!entry.hasHeaders) {
+            return entry.source;
+        }
+        Map<String, String> headers = warmupHeaders;
+        if (headers == null) {
+            return null;
+        }
+        JavaOnlyMap headersMap = new JavaOnlyMap();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            headersMap.putString(header.getKey(), header.getValue());
+        }
+        JavaOnlyMap source = new JavaOnlyMap();
+        source.merge(entry.source);
+        source.putMap(HEADERS_KEY, headersMap);
+        return source;
+    }
+
+    /**
+     * @return number of entries decoded at launch.
+     */
+    static int getWarmedCount() {
+        return WARMED_COUNT.get();
+    }
+
+    /**
+     * @return number of warmed entries a view was served from the memory cache.
+     */
+    static int getUsedCount() {
+        return USED.size();
+    }
+
+    /**
+     * Listener that records the image once it is displayed by the view.
+     */
+    static class RecordListener<T extends Drawable> implements RequestListener<T> {
+        private final FastImageViewWithUrl view;
+        private final ReadableMap source;
+
+        RecordListener(@NonNull FastImageViewWithUrl view, @NonNull ReadableMap source) {
+            this.view = view;
+            this.source = source;
+        }
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<T> target, boolean isFirstResource) {
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(@NonNull T resource, @NonNull Object model, Target<T> target, @NonNull DataSource dataSource, boolean isFirstResource) {
+            int width = view.getRequestWidth();
+            int height = view.getRequestHeight();
+            if (width > 0 && height > 0) {
+                record(view.getContext(), source, width, height, view.getScaleType(), dataSource);
+            }
+            return false;
+        }
+    }
+
+    private static void record(Context context, ReadableMap source, int width, int height, ScaleType scaleType, DataSource dataSource) {
+        String uri = source.hasKey("uri") ? source.getString("uri") : null;
+        if (uri == null) {
+            return;
+        }
+        String key = uri + '|' + width + 'x' + height + '|' + scaleType.name();
+        if (dataSource == DataSource.MEMORY_CACHE && WARMED.contains(key)) {
+            USED.add(key);
+        }
+        Entry entry = ENTRIES.get(key);
+        if (entry == null) {
+            Map<String, Object> values = source.toHashMap();
+            Object headers = values.remove(HEADERS_KEY);
+            boolean hasHeaders = headers instanceof Map && !((Map<?, ?>) headers).isEmpty();
+            entry = add(new Entry(key, toJavaOnlyMap(new JSONObject(values)), hasHeaders, width, height, scaleType, 0));
+        }
+        entry.count.incrementAndGet();
+        scheduleWrite(context.getApplicationContext());
+    }
+
+    /**
+     * Adds the entry unless one with the same key exists. Beyond the kept entries, the least
+     * displayed other entry is dropped.
+     *
+     * @return the entry held for the key.
+     */
+    private static synchronized Entry add(Entry entry) {
+        Entry existing = ENTRIES.putIfAbsent(entry.key, entry);
+        if (existing != null) {
+            return existing;
+        }
+        if (ENTRIES.size() > Math.max(1, budget) * KEPT_ENTRIES_FACTOR) {
+            Entry least = null;
+            for (Entry candidate : ENTRIES.values()) {
+                if (candidate != entry && (least == null || candidate.count.get() < least.count.get())) {
+                    least = candidate;
+                }
+            }
+            if (least != null) {
+                ENTRIES.remove(least.key);
+            }
+        }
+        return entry;
+    }
+
+    private static synchronized void scheduleWrite(final Context context) {
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+        }
+        pendingWrite = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                write(context);
+            }
+        }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static List<Entry> getTop(int count) {
+        List<Entry> entries = new ArrayList<>(ENTRIES.values());
+        Collections.sort(entries, (a, b) -> Integer.compare(b.count.get(), a.count.get()));
+        return entries.size() > count ? entries.subList(0, count) : entries;
+    }
+
+    private static synchronized File getFile(Context context) {
+        if (file == null) {
+            file = new File(context.getFilesDir(), FILE_NAME);
+        }
+        return file;
+    }
+
+    // Runs on EXECUTOR.
+    private static void load(Context context) {
+        File hotSetFile = getFile(context);
+        if (!hotSetFile.exists()) {
+            return;
+        }
+        try (InputStream input = new FileInputStream(hotSetFile)) {
+            byte[] bytes = new byte[(int) hotSetFile.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            JSONArray array = new JSONArray(new String(bytes, 0, offset, StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                JSONObject source = item.getJSONObject("source");
+                add(new Entry(
+                        item.getString("key"),
+                        toJavaOnlyMap(source),
+                        item.getBoolean("hasHeaders"),
+                        item.getInt("width"),
+                        item.getInt("height"),
+                        ScaleType.valueOf(item.getString("scaleType")),
+                        item.getInt("count")));
+            }
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            Log.w(TAG, "Unable to read hot set", e);
+        }
+    }
+
+    // Runs on EXECUTOR.
+    private static void write(Context context) {
+        JSONArray array = new JSONArray();
+        try {
+            for (Entry entry : getTop(budget * KEPT_ENTRIES_FACTOR)) {
+                JSONObject item = new JSONObject();
+                item.put("key", entry.key);
+                item.put("source", toJson(entry.source));
+                item.put("hasHeaders", entry.hasHeaders);
+                item.put("width", entry.width);
+                item.put("height", entry.height);
+                item.put("scaleType", entry.scaleType.name());
+                item.put("count", entry.count.get());
+                array.put(item);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Unable to serialize hot set", e);
+            return;
+        }
+        File hotSetFile = getFile(context);
+        File tmp = new File(hotSetFile.getPath() + ".tmp");
+        try (OutputStream output = new FileOutputStream(tmp)) {
+            output.write(array.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write hot set", e);
+            return;
+        }
+        if (!tmp.renameTo(hotSetFile)) {
+            tmp.delete();
+        }
+    }
+
+    private static JSONObject toJson(JavaOnlyMap map) {
+        return new JSONObject(map.toHashMap());
+    }
+
+    private static JavaOnlyMap toJavaOnlyMap(JSONObject json) {
+        JavaOnlyMap map = new JavaOnlyMap();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = json.opt(key);
+            if (value instanceof JSONObject) {
+                map.putMap(key, toJavaOnlyMap((JSONObject) value));
+            } else if (value instanceof JSONArray) {
+                map.putArray(key, toJavaOnlyArray((JSONArray) value));
+            } else if (value instanceof Boolean) {
+                map.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Number) {
+                map.putDouble(key, ((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                map.putString(key, (String) value);
+            } else {
+                map.putNull(key);
+            }
+        }
+        return map;
+    }
+
+    private static JavaOnlyArray toJavaOnlyArray(JSONArray json) {
+        JavaOnlyArray array = new JavaOnlyArray();
+        for (int i = 0; i < json.length(); i++) {
+            Object value = json.opt(i);
+            if (value instanceof JSONObject) {
+                array.pushMap(toJavaOnlyMap((JSONObject) value));
+            } else if (value instanceof JSONArray) {
+                array.pushArray(toJavaOnlyArray((JSONArray) value));
+            } else if (value instanceof Boolean) {
+                array.pushBoolean((Boolean) value);
+            } else if (value instanceof Number) {
+                array.pushDouble(((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                array.pushString((String) value);
+            } else {
+                array.pushNull();
+            }
+        }
+        return array;
+    }
+
+    private static final class Entry {
+        final String key;
+        // Without headers.
+        final JavaOnlyMap source;
+        final boolean hasHeaders;
+        final int width;
+        final int height;
+        final ScaleType scaleType;
+        final AtomicInteger count;
+
+        Entry(String key, JavaOnlyMap source, boolean hasHeaders, int width, int height, ScaleType scaleType, int count) {
+            this.key = key;
+            this.source = source;
+            this.hasHeaders = hasHeaders;
+            this.width = width;
+            this.height = height;
+            this.scaleType = scaleType;
+            this.count = new AtomicInteger(count);
+        }
+    }
+}
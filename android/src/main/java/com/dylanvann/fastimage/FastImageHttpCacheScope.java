@@ -0,0 +1,92 @@
+package com.dylanvann.fastimage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Option;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.LazyHeaders;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Keeps the HTTP cache to `cache: "web"` images. Other images are stored in Glide's disk cache,
+ * writing them to the HTTP cache too would double the disk writes and push out the web responses
+ * the HTTP cache is sized for.
+ *
+ * Loads with {@link #USE_HTTP_CACHE} set carry a marker header. Requests without it pass OkHttp's
+ * cache with `Cache-Control: no-store`, which skips the cache for reads and writes, and get their
+ * own `Cache-Control` header back before they go out.
+ */
+class FastImageHttpCacheScope {
+    static final Option<Boolean> USE_HTTP_CACHE = Option.memory("com.dylanvann.fastimage.UseHttpCache", false);
+
+    private static final String MARKER_HEADER = "X-FastImage-Http-Cache";
+    private static final String CACHE_CONTROL_HEADER = "Cache-Control";
+
+    /**
+     * Runs before OkHttp's cache.
+     */
+    static final Interceptor APPLICATION_INTERCEPTOR = new Interceptor() {
+        @NonNull
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Request request = chain.request();
+            if (request.header(MARKER_HEADER) != null) {
+                return chain.proceed(request.newBuilder().removeHeader(MARKER_HEADER).build());
+            }
+            return chain.proceed(request
+                    .newBuilder()
+                    .tag(OriginalCacheControl.class, new OriginalCacheControl(request.header(CACHE_CONTROL_HEADER)))
+                    .header(CACHE_CONTROL_HEADER, "no-store")
+                    .build());
+        }
+    };
+
+    /**
+     * Runs after OkHttp's cache, right before the request is sent.
+     */
+    static final Interceptor NETWORK_INTERCEPTOR = new Interceptor() {
+        @NonNull
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Request request = chain.request();
+            OriginalCacheControl original = request.tag(OriginalCacheControl.class);
+            if (original == null) {
+                return chain.proceed(request);
+            }
+            Request.Builder builder = request.newBuilder().removeHeader(CACHE_CONTROL_HEADER);
+            if (original.value != null) {
+                builder.header(CACHE_CONTROL_HEADER, original.value);
+            }
+            return chain.proceed(builder.build());
+        }
+    };
+
+    /**
+     * @return the url with the header that lets its request use the HTTP cache.
+     */
+    @NonNull
+    static GlideUrl allowHttpCache(@NonNull GlideUrl url) {
+        LazyHeaders.Builder headers = new LazyHeaders.Builder();
+        for (Map.Entry<String, String> header : url.getHeaders().entrySet()) {
+            headers.addHeader(header.getKey(), header.getValue());
+        }
+        headers.addHeader(MARKER_HEADER, "1");
+        return new GlideUrl(url.toStringUrl(), headers.build());
+    }
+
+    private static final class OriginalCacheControl {
+        @Nullable
+        final String value;
+
+        OriginalCacheControl(@Nullable String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.dylanvann.fastimage;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Date;
+
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Remembers the validator (ETag or Last-Modified) and freshness lifetime of the last response
+ * seen for each url, so `cache: "web"` images can be served from Glide's memory cache while the
+ * HTTP response they were decoded from is still fresh. `cache: "staleWhileRevalidate"` images
+ * keep the validators of the response they were downloaded with for their revalidation.
+ */
+class FastImageHttpValidators implements Interceptor {
+    private static final int MAX_ENTRIES = 512;
+
+    private static final LruCache<String, Validator> VALIDATORS = new LruCache<>(MAX_ENTRIES);
+
+    /**
+     * @return the validator of the response last seen for the url if that response is still
+     * fresh, null if the image has to be revalidated.
+     */
+    @Nullable
+    static String getFreshValidator(@NonNull String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return null;
+        }
+        Validator validator = VALIDATORS.get(httpUrl.toString());
+        if (validator == null || System.currentTimeMillis() >= validator.freshUntil) {
+            return null;
+        }
+        return validator.getValue();
+    }
+
+    /**
+     * @return the validators of the response last seen for the url, fresh or not, null if it had
+     * neither an ETag nor a Last-Modified header.
+     */
+    @Nullable
+    static Validator getLastValidator(@NonNull String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl == null ? null : VALIDATORS.get(httpUrl.toString());
+    }
+
+    static void forget(@NonNull String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl != null) {
+            VALIDATORS.remove(httpUrl.toString());
+        }
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || !response.isSuccessful()) {
+            return response;
+        }
+
+        String key = request.url().toString();
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (etag == null && lastModified == null) {
+            VALIDATORS.remove(key);
+        } else {
+            long freshnessLifetime = getFreshnessLifetime(response);
+            long freshUntil = freshnessLifetime <= 0 ? 0 : response.receivedResponseAtMillis() + freshnessLifetime;
+            VALIDATORS.put(key, new Validator(etag, lastModified, freshUntil));
+        }
+        return response;
+    }
+
+    // Simplified RFC 7234 freshness lifetime minus the age the response already had.
+    private static long getFreshnessLifetime(Response response) {
+        CacheControl cacheControl = response.cacheControl();
+        if (cacheControl.noStore() || cacheControl.noCache()) {
+            return 0;
+        }
+
+        long lifetime = 0;
+        if (cacheControl.maxAgeSeconds() >= 0) {
+            lifetime = cacheControl.maxAgeSeconds() * 1000L;
+        } else {
+            Date expires = response.headers().getDate("Expires");
+            Date date = response.headers().getDate("Date");
+            if (expires != null) {
+                long served = date != null ? date.getTime() : response.receivedResponseAtMillis();
+                lifetime = expires.getTime() - served;
+            }
+        }
+
+        String age = response.header("Age");
+        if (age != null) {
+            try {
+                lifetime -= Long.parseLong(age) * 1000L;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return lifetime;
+    }
+
+    static final class Validator {
+        @Nullable
+        final String etag;
+        @Nullable
+        final String lastModified;
+        // 0 when the response was not fresh to begin with.
+        final long freshUntil;
+
+        Validator(@Nullable String etag, @Nullable String lastModified, long freshUntil) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.freshUntil = freshUntil;
+        }
+
+        @NonNull
+        String getValue() {
+            return etag != null ? etag : lastModified;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.dylanvann.fastimage;
+
+import android.graphics.drawable.Animatable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Glide's memory cache, additionally indexed by model so `queryCache` can tell whether any decoded
+ * variant of an image is held without starting a request, and `evict` can drop all of them.
+ *
+ * Glide's engine keys don't expose their model, it is taken from their `toString()`. Only entries
+ * in the LRU are indexed. Glide takes a resource out of the cache while it is displayed and puts it
+ * back once it is released, so it is not reported in between.
+ */
+class FastImageMemoryCache extends LruResourceCache {
+    private static final String MODEL_PREFIX = "model=";
+    private static final String MODEL_SUFFIX = ", width=";
+
+    @Nullable
+    private static volatile FastImageMemoryCache instance = null;
+
+    private final Map<Key, String> modelsByKey = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> keysByModel = new ConcurrentHashMap<>();
+    private final Set<Key> animatedKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    FastImageMemoryCache(long size) {
+        super(size);
+        instance = this;
+    }
+
+    /**
+     * @return the cache Glide was set up with, null before Glide was initialized.
+     */
+    @Nullable
+    static FastImageMemoryCache get() {
+        return instance;
+    }
+
+    /**
+     * @param model the model's string form, for urls their Glide cache key.
+     */
+    boolean containsModel(@NonNull String model) {
+        Set<Key> keys = keysByModel.get(model);
+        return keys != null && !keys.isEmpty();
+    }
+
+    /**
+     * Removes every decoded variant of the model that is not currently displayed.
+     *
+     * @return the number of bytes freed.
+     */
+    synchronized long evictModel(@NonNull String model) {
+        Set<Key> keys = keysByModel.get(model);
+        if (keys == null) {
+            return 0;
+        }
+        long freed = 0;
+        for (Key key : new ArrayList<>(keys)) {
+            Resource<?> resource = remove(key);
+            if (resource != null) {
+                freed += resource.getSize();
+                // Untracks the key and hands the resource back to Glide for recycling.
+                onItemEvicted(key, resource);
+            } else {
+                untrack(key);
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Removes animated images (their frames are the largest entries) that are not on screen.
+     */
+    synchronized void evictAnimated() {
+        for (Key key : new ArrayList<>(animatedKeys)) {
+            Resource<?> resource = remove(key);
+            if (resource != null) {
+                onItemEvicted(key, resource);
+            } else {
+                untrack(key);
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public synchronized Resource<?> put(@NonNull Key key, @Nullable Resource<?> item) {
+        // Tracked first, the item is evicted right away from within put() if it is too large.
+        track(key);
+        if (item != null && Animatable.class.isAssignableFrom(item.getResourceClass())) {
+            animatedKeys.add(key);
+        }
+        return super.put(key, item);
+    }
+
+    @Nullable
+    @Override
+    public synchronized Resource<?> remove(@NonNull Key key) {
+        Resource<?> removed = super.remove(key);
+        if (removed != null) {
+            // Tracked again when Glide puts it back.
+            untrack(key);
+        }
+        return removed;
+    }
+
+    @Override
+    protected synchronized void onItemEvicted(@NonNull Key key, @Nullable Resource<?> item) {
+        // Replacing an entry evicts the previous value under the same key.
+        if (!contains(key)) {
+            untrack(key);
+        }
+        super.onItemEvicted(key, item);
+    }
+
+    private void track(Key key) {
+        String model = getModel(key);
+        if (model == null || modelsByKey.put(key, model) != null) {
+            return;
+        }
+        Set<Key> keys = keysByModel.get(model);
+        if (keys == null) {
+            Set<Key> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            keys = keysByModel.putIfAbsent(model, newKeys);
+            if (keys == null) {
+                keys = newKeys;
+            }
+        }
+        keys.add(key);
+    }
+
+    private void untrack(Key key) {
+        animatedKeys.remove(key);
+        String model = modelsByKey.remove(key);
+        if (model == null) {
+            return;
+        }
+        Set<Key> keys = keysByModel.get(model);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByModel.remove(model, keys);
+            }
+        }
+    }
+
+    @Nullable
+    private static String getModel(Key key) {
+        String description = key.toString();
+        int start = description.indexOf(MODEL_PREFIX);
+        if (start < 0) {
+            return null;
+        }
+        start += MODEL_PREFIX.length();
+        int end = description.indexOf(MODEL_SUFFIX, start);
+        return end < 0 ? null : description.substring(start, end);
+    }
+}
@@ -0,0 +1,131 @@
+package com.dylanvann.fastimage;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Releases image memory in steps when the system runs low, on top of Glide's own trimming:
+ *
+ * - RUNNING_LOW shrinks the memory cache to a fraction of its size for a while.
+ * - RUNNING_CRITICAL also drops animated images that are not on screen and empties the bitmap
+ *   pool.
+ * - Once the app is in the background (UI_HIDDEN and up) or on low memory, all image memory that
+ *   is not on screen is released.
+ *
+ * Every step that released memory is reported to JS with the `onFastImageMemoryTrim` event.
+ */
+class FastImageMemoryPolicy implements ComponentCallbacks2 {
+    static final String EVENT_NAME = "onFastImageMemoryTrim";
+    // The cache goes back to its full size once memory stayed fine for this long.
+    private static final long RESTORE_DELAY_MS = 60_000;
+
+    @Nullable
+    private static WeakReference<ReactContext> reactContextReference = null;
+
+    private final Context context;
+    private final LruBitmapPool bitmapPool;
+    private final float lowMemoryCacheFraction;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable restoreCacheSize = new Runnable() {
+        @Override
+        public void run() {
+            FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+            if (memoryCache != null) {
+                memoryCache.setSizeMultiplier(1f);
+            }
+        }
+    };
+
+    FastImageMemoryPolicy(@NonNull Context context, @NonNull LruBitmapPool bitmapPool, float lowMemoryCacheFraction) {
+        this.context = context.getApplicationContext();
+        this.bitmapPool = bitmapPool;
+        this.lowMemoryCacheFraction = lowMemoryCacheFraction;
+    }
+
+    static synchronized void setReactContext(@NonNull ReactContext reactContext) {
+        reactContextReference = new WeakReference<>(reactContext);
+    }
+
+    @Nullable
+    private static synchronized ReactContext getReactContext() {
+        return reactContextReference == null ? null : reactContextReference.get();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+        if (memoryCache == null) {
+            return;
+        }
+        long before = memoryCache.getCurrentSize() + bitmapPool.getCurrentSize();
+        String step;
+
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            step = "background";
+            Glide.get(context).clearMemory();
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            step = "critical";
+            shrink(memoryCache);
+            memoryCache.evictAnimated();
+            bitmapPool.clearMemory();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            step = "low";
+            shrink(memoryCache);
+        } else {
+            return;
+        }
+
+        long after = memoryCache.getCurrentSize() + bitmapPool.getCurrentSize();
+        dispatch(step, level, Math.max(0, before - after));
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Nothing to do.
+    }
+
+    private void shrink(FastImageMemoryCache memoryCache) {
+        if (lowMemoryCacheFraction < 1f) {
+            memoryCache.setSizeMultiplier(lowMemoryCacheFraction);
+        }
+        handler.removeCallbacks(restoreCacheSize);
+        handler.postDelayed(restoreCacheSize, RESTORE_DELAY_MS);
+    }
+
+    private void dispatch(String step, int level, long bytesReleased) {
+        ReactContext reactContext = getReactContext();
+        if (reactContext == null || !reactContext.hasActiveReactInstance()) {
+            return;
+        }
+        FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+        WritableMap event = Arguments.createMap();
+        event.putString("step", step);
+        event.putInt("level", level);
+        event.putDouble("bytesReleased", bytesReleased);
+        event.putDouble("memoryCacheSize", memoryCache == null ? 0 : memoryCache.getCurrentSize());
+        event.putDouble("bitmapPoolSize", bitmapPool.getCurrentSize());
+        reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_NAME, event);
+    }
+}
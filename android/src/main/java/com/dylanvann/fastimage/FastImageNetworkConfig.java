@@ -0,0 +1,184 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Settings of the OkHttp client used for image traffic only, so images don't share dispatcher
+ * limits, connection pool and timeouts with the app's API calls.
+ *
+ * Defaults come from the Gradle `ext` properties of the app (see docs/network-config.md) and can
+ * be overridden natively or from JS. Values are read when Glide registers its components, so
+ * they must be set before the first image is loaded. Only the request limits can be changed
+ * afterwards.
+ */
+public final class FastImageNetworkConfig {
+    private static int maxRequests = BuildConfig.FAST_IMAGE_MAX_REQUESTS;
+    private static int maxRequestsPerHost = BuildConfig.FAST_IMAGE_MAX_REQUESTS_PER_HOST;
+    private static int connectionPoolSize = BuildConfig.FAST_IMAGE_CONNECTION_POOL_SIZE;
+    private static long keepAliveDurationMs = BuildConfig.FAST_IMAGE_KEEP_ALIVE_DURATION_MS;
+    private static boolean preferHttp2 = BuildConfig.FAST_IMAGE_PREFER_HTTP2;
+    private static long connectTimeoutMs = BuildConfig.FAST_IMAGE_CONNECT_TIMEOUT_MS;
+    private static long readTimeoutMs = BuildConfig.FAST_IMAGE_READ_TIMEOUT_MS;
+    private static long httpCacheSize = BuildConfig.FAST_IMAGE_HTTP_CACHE_SIZE;
+
+    static final String HTTP_CACHE_DIR = "fastimage_http_cache";
+
+    @Nullable
+    private static Dispatcher activeDispatcher = null;
+    @Nullable
+    private static Cache activeCache = null;
+
+    private FastImageNetworkConfig() {
+    }
+
+    public static synchronized void setMaxRequests(int value) {
+        maxRequests = value;
+        if (activeDispatcher != null) {
+            activeDispatcher.setMaxRequests(value);
+        }
+    }
+
+    public static synchronized void setMaxRequestsPerHost(int value) {
+        maxRequestsPerHost = value;
+        if (activeDispatcher != null) {
+            activeDispatcher.setMaxRequestsPerHost(value);
+        }
+    }
+
+    public static synchronized void setConnectionPool(int size, long keepAliveDurationMs) {
+        connectionPoolSize = size;
+        FastImageNetworkConfig.keepAliveDurationMs = keepAliveDurationMs;
+    }
+
+    public static synchronized void setPreferHttp2(boolean value) {
+        preferHttp2 = value;
+    }
+
+    public static synchronized void setTimeouts(long connectTimeoutMs, long readTimeoutMs) {
+        FastImageNetworkConfig.connectTimeoutMs = connectTimeoutMs;
+        FastImageNetworkConfig.readTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Size in bytes of the HTTP cache used by `cache: "web"` images, 0 disables it.
+     */
+    public static synchronized void setHttpCacheSize(long bytes) {
+        httpCacheSize = bytes;
+    }
+
+    @Nullable
+    static synchronized Cache getHttpCache() {
+        return activeCache;
+    }
+
+    /**
+     * Removes the url's response from the HTTP cache.
+     *
+     * @return the number of bytes freed.
+     */
+    static long evictFromHttpCache(@NonNull String url) {
+        Cache cache = getHttpCache();
+        if (cache == null) {
+            return 0;
+        }
+        try {
+            long sizeBefore = cache.size();
+            Iterator<String> urls = cache.urls();
+            while (urls.hasNext()) {
+                if (url.equals(urls.next())) {
+                    urls.remove();
+                }
+            }
+            return Math.max(0, sizeBefore - cache.size());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Applies the `FastImage.configureNetwork` options, missing or null keys keep their current value.
+    static synchronized void apply(@NonNull ReadableMap config) {
+        if (hasValue(config, "maxRequests")) {
+            setMaxRequests(config.getInt("maxRequests"));
+        }
+        if (hasValue(config, "maxRequestsPerHost")) {
+            setMaxRequestsPerHost(config.getInt("maxRequestsPerHost"));
+        }
+        if (hasValue(config, "connectionPoolSize")) {
+            connectionPoolSize = config.getInt("connectionPoolSize");
+        }
+        if (hasValue(config, "keepAliveDuration")) {
+            keepAliveDurationMs = (long) config.getDouble("keepAliveDuration");
+        }
+        if (hasValue(config, "preferHttp2")) {
+            preferHttp2 = config.getBoolean("preferHttp2");
+        }
+        if (hasValue(config, "connectTimeout")) {
+            connectTimeoutMs = (long) config.getDouble("connectTimeout");
+        }
+        if (hasValue(config, "readTimeout")) {
+            readTimeoutMs = (long) config.getDouble("readTimeout");
+        }
+        if (hasValue(config, "httpCacheSize")) {
+            httpCacheSize = (long) config.getDouble("httpCacheSize");
+        }
+    }
+
+    private static boolean hasValue(ReadableMap config, String key) {
+        return config.hasKey(key) && !config.isNull(key);
+    }
+
+    /**
+     * Gives the builder its own dispatcher, connection pool, HTTP cache, protocols and timeouts.
+     */
+    static synchronized OkHttpClient.Builder configure(@NonNull Context context, @NonNull OkHttpClient.Builder builder) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        activeDispatcher = dispatcher;
+
+        activeCache = httpCacheSize > 0
+                ? new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIR), httpCacheSize)
+                : null;
+
+        return builder
+                .cache(activeCache)
+                // Only `cache: "web"` images use the HTTP cache.
+                .addInterceptor(FastImageHttpCacheScope.APPLICATION_INTERCEPTOR)
+                .addNetworkInterceptor(FastImageHttpCacheScope.NETWORK_INTERCEPTOR)
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(connectionPoolSize, keepAliveDurationMs, TimeUnit.MILLISECONDS))
+                .protocols(preferHttp2
+                        ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                        : Collections.singletonList(Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @NonNull
+    static synchronized String dump() {
+        return String.format(Locale.US,
+                "FastImage network config {maxRequests=%d, maxRequestsPerHost=%d, connectionPoolSize=%d, "
+                        + "keepAliveDurationMs=%d, preferHttp2=%b, connectTimeoutMs=%d, readTimeoutMs=%d, httpCacheSize=%d}",
+                maxRequests, maxRequestsPerHost, connectionPoolSize,
+                keepAliveDurationMs, preferHttp2, connectTimeoutMs, readTimeoutMs, httpCacheSize);
+    }
+}
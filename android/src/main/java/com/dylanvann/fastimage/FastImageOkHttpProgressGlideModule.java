@@ -1,6 +1,8 @@
 package com.dylanvann.fastimage;
 
 import android.content.Context;
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 
 import com.bumptech.glide.Glide;
@@ -13,9 +15,9 @@ import com.facebook.react.modules.network.OkHttpClientProvider;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
@@ -32,7 +34,9 @@ import okio.Source;
 @GlideModule
 public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
 
+    private static final String TAG = "FastImageOkHttp";
     private static final DispatchingProgressListener progressListener = new DispatchingProgressListener();
+    private static final FastImageHttpValidators httpValidators = new FastImageHttpValidators();
 
     @Override
     public void registerComponents(
@@ -40,16 +44,26 @@ public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
             @NonNull Glide glide,
             @NonNull Registry registry
     ) {
-        OkHttpClient client = OkHttpClientProvider
-                .getOkHttpClient()
+        // Start from the app's client to keep its interceptors, cookie jar and TLS setup, but give
+        // images their own dispatcher, connection pool and timeouts.
+        OkHttpClient baseClient = FastImageNetworkConfig
+                .configure(context, OkHttpClientProvider.getOkHttpClient().newBuilder())
+                .addInterceptor(httpValidators)
+                .build();
+        Log.d(TAG, FastImageNetworkConfig.dump());
+        FastImageRevalidator.setClient(baseClient);
+        FastImageRevalidator.preload(context);
+
+        OkHttpClient client = baseClient
                 .newBuilder()
                 .addInterceptor(createInterceptor(progressListener))
                 .build();
-        OkHttpUrlLoader.Factory factory = new OkHttpUrlLoader.Factory(client);
+        // Concurrent loads of one url share a single fetch.
+        FastImageSingleFlightLoader.Factory factory = new FastImageSingleFlightLoader.Factory(new OkHttpUrlLoader.Factory(client));
         registry.replace(GlideUrl.class, InputStream.class, factory);
     }
 
-    private static Interceptor createInterceptor(final ResponseProgressListener listener) {
+    static Interceptor createInterceptor(final ResponseProgressListener listener) {
         return new Interceptor() {
             @Override
             public Response intercept(Chain chain) throws IOException {
@@ -72,50 +86,64 @@ public class FastImageOkHttpProgressGlideModule extends LibraryGlideModule {
         progressListener.expect(key, listener);
     }
 
-    private interface ResponseProgressListener {
+    interface ResponseProgressListener {
         void update(String key, long bytesRead, long contentLength);
     }
 
-    private static class DispatchingProgressListener implements ResponseProgressListener {
-        private final Map<String, FastImageProgressListener> LISTENERS = new WeakHashMap<>();
-        private final Map<String, Long> PROGRESSES = new HashMap<>();
+    // update() runs on OkHttp reader threads while expect() and forget() run on the UI thread,
+    // so the registry must be safe for concurrent access. A listener and its last dispatched step
+    // are registered together, readers that race with forget() or with the end of the load keep
+    // advancing the same step and never report one twice.
+    static class DispatchingProgressListener implements ResponseProgressListener {
+        private final ConcurrentMap<String, Expectation> expectations = new ConcurrentHashMap<>();
 
         void forget(String key) {
-            LISTENERS.remove(key);
-            PROGRESSES.remove(key);
+            expectations.remove(key);
         }
 
         void expect(String key, FastImageProgressListener listener) {
-            LISTENERS.put(key, listener);
+            expectations.put(key, new Expectation(listener));
         }
 
         @Override
         public void update(final String key, final long bytesRead, final long contentLength) {
-            final FastImageProgressListener listener = LISTENERS.get(key);
-            if (listener == null) {
+            final Expectation expectation = expectations.get(key);
+            if (expectation == null) {
                 return;
             }
             if (contentLength <= bytesRead) {
-                forget(key);
+                expectations.remove(key, expectation);
             }
-            if (needsDispatch(key, bytesRead, contentLength, listener.getGranularityPercentage())) {
-                listener.onProgress(key, bytesRead, contentLength);
+            if (expectation.needsDispatch(bytesRead, contentLength)) {
+                expectation.listener.onProgress(key, bytesRead, contentLength);
             }
         }
+    }
 
-        private boolean needsDispatch(String key, long current, long total, float granularity) {
-            if (granularity == 0 || current == 0 || total == current) {
-                return true;
-            }
-            float percent = 100f * current / total;
-            long currentProgress = (long) (percent / granularity);
-            Long lastProgress = PROGRESSES.get(key);
-            if (lastProgress == null || currentProgress != lastProgress) {
-                PROGRESSES.put(key, currentProgress);
+    private static final class Expectation {
+        final FastImageProgressListener listener;
+        // Only moves forward.
+        private final AtomicLong lastStep = new AtomicLong(-1L);
+
+        Expectation(FastImageProgressListener listener) {
+            this.listener = listener;
+        }
+
+        boolean needsDispatch(long current, long total) {
+            float granularity = listener.getGranularityPercentage();
+            if (granularity == 0 || current == 0 || total <= 0) {
                 return true;
-            } else {
-                return false;
             }
+            long step = (long) (100f * current / total / granularity);
+            // Only the thread that moves the step forward dispatches.
+            long previous;
+            do {
+                previous = lastStep.get();
+                if (previous >= step) {
+                    return false;
+                }
+            } while (!lastStep.compareAndSet(previous, step));
+            return true;
         }
     }
 
@@ -0,0 +1,123 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.widget.ImageView.ScaleType;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.uimanager.PixelUtil;
+
+/**
+ * A preload source turned into a Glide request.
+ *
+ * Sources with a `width` and `height` (in dp) are decoded at the size and with the
+ * transformation a FastImage view of that size and `resizeMode` asks for, so the decoded image is
+ * already in the memory cache when the view mounts, capped by `maxDecodeWidth`/`maxDecodeHeight`
+ * like the view. Without a size the original image is decoded.
+ * With `preloadMode: "disk"` only the original bytes are fetched, nothing is decoded.
+ */
+class FastImagePreloadRequest {
+    private static final String PRELOAD_MODE_DISK = "disk";
+    // What downloadOnly() sets, applied again over the source's options which would replace it.
+    // Web images also land in the HTTP cache on the way.
+    private static final RequestOptions DOWNLOAD_ONLY_OPTIONS = new RequestOptions()
+            .diskCacheStrategy(DiskCacheStrategy.DATA)
+            .priority(Priority.LOW)
+            .skipMemoryCache(true);
+
+    private final RequestBuilder<?> builder;
+    private final int width;
+    private final int height;
+
+    private FastImagePreloadRequest(RequestBuilder<?> builder, int width, int height) {
+        this.builder = builder;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return null when the source has no uri.
+     */
+    @Nullable
+    static FastImagePreloadRequest create(@NonNull Context context, @NonNull RequestManager requestManager, @Nullable ReadableMap source) {
+        if (source == null || !source.hasKey("uri") || source.isNull("uri") || source.getString("uri").isEmpty()) {
+            return null;
+        }
+        final FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+        // Same model and options as the view, see FastImageViewWithUrl.onAfterUpdate.
+        final Object model = imageSource.getSourceForLoad();
+        RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source, null);
+
+        if (PRELOAD_MODE_DISK.equals(getString(source, "preloadMode"))) {
+            return new FastImagePreloadRequest(
+                    requestManager.downloadOnly().load(model).apply(options.apply(DOWNLOAD_ONLY_OPTIONS)),
+                    Target.SIZE_ORIGINAL,
+                    Target.SIZE_ORIGINAL);
+        }
+
+        final double width = getDouble(source, "width");
+        final double height = getDouble(source, "height");
+        if (width <= 0 || height <= 0) {
+            return new FastImagePreloadRequest(
+                    requestManager.load(model).apply(options),
+                    Target.SIZE_ORIGINAL,
+                    Target.SIZE_ORIGINAL);
+        }
+
+        // Capped like a view with maxDecodeWidth/maxDecodeHeight, see FastImageDecodeSizeTarget.
+        final int widthPx = Math.round(PixelUtil.toPixelFromDIP(width));
+        final int heightPx = Math.round(PixelUtil.toPixelFromDIP(height));
+        final float scale = FastImageDecodeSizeTarget.getScale(
+                widthPx, heightPx, (int) getDouble(source, "maxDecodeWidth"), (int) getDouble(source, "maxDecodeHeight"));
+        return new FastImagePreloadRequest(
+                requestManager.load(model).apply(FastImageViewConverter.applyScaleType(options, FastImageViewConverter.getScaleType(getString(source, "resizeMode")))),
+                Math.max(1, Math.round(widthPx * scale)),
+                Math.max(1, Math.round(heightPx * scale)));
+    }
+
+    /**
+     * Decodes the source the way a view laid out at the given size in pixels and with the given
+     * scale type does.
+     *
+     * @return null when the source has no uri.
+     */
+    @Nullable
+    static FastImagePreloadRequest create(@NonNull Context context, @NonNull RequestManager requestManager, @Nullable ReadableMap source, int width, int height, @NonNull ScaleType scaleType) {
+        if (source == null || !source.hasKey("uri") || source.isNull("uri") || source.getString("uri").isEmpty()) {
+            return null;
+        }
+        final FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+        RequestOptions options = FastImageViewConverter.getOptions(context, imageSource, source, null);
+        return new FastImagePreloadRequest(
+                requestManager.load(imageSource.getSourceForLoad()).apply(FastImageViewConverter.applyScaleType(options, scaleType)),
+                width,
+                height);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Target<?> start(@Nullable RequestListener<Object> listener) {
+        RequestBuilder request = builder;
+        if (listener != null) {
+            request = request.listener(listener);
+        }
+        return request.preload(width, height);
+    }
+
+    @Nullable
+    private static String getString(ReadableMap source, String key) {
+        return source.hasKey(key) && !source.isNull(key) ? source.getString(key) : null;
+    }
+
+    private static double getDouble(ReadableMap source, String key) {
+        return source.hasKey(key) && !source.isNull(key) ? source.getDouble(key) : 0;
+    }
+}
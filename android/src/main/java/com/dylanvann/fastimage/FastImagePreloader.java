@@ -0,0 +1,334 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A single `FastImage.preloadAwait` call.
+ *
+ * Sources are loaded into the caches at most `maxConcurrency` at a time. The promise resolves
+ * once every source was cached or failed, when the timeout hits or when the batch is cancelled,
+ * with the status and duration of every source in the order they were passed.
+ *
+ * Sources are parsed on a background thread. Afterwards all state is only touched on the UI
+ * thread, where Glide delivers its callbacks.
+ */
+class FastImagePreloader {
+    static final String STATUS_MEMORY = "memory";
+    static final String STATUS_DISK = "disk";
+    static final String STATUS_NETWORK = "network";
+    static final String STATUS_LOCAL = "local";
+    static final String STATUS_FAILED = "failed";
+    static final String STATUS_SKIPPED = "skipped";
+    static final String STATUS_CANCELLED = "cancelled";
+
+    private static final Map<Integer, FastImagePreloader> ACTIVE = new ConcurrentHashMap<>();
+
+    private final Context context;
+    private final RequestManager requestManager;
+    private final ReadableArray sources;
+    private final Promise promise;
+    private final int id;
+    private final int maxConcurrency;
+    private final long timeoutMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final String[] statuses;
+    private final long[] durations;
+    private final String[] errors;
+    private final long[] startTimes;
+    private final Target<?>[] targets;
+    // Filled on the parsing thread before the UI thread starts reading them.
+    private final FastImagePreloadRequest[] requests;
+    // Status of sources that could not be turned into a request.
+    private final String[] prepared;
+
+    private long startTime;
+    private int nextIndex = 0;
+    private int running = 0;
+    private int remaining;
+    private boolean done = false;
+    private boolean timedOut = false;
+    // Set when the batch is cancelled while its sources are parsed, read by the parsing thread.
+    private volatile boolean cancelledBeforeBegin = false;
+    private boolean begun = false;
+
+    /**
+     * @param options `id` to cancel the batch with, `maxConcurrency` (0 for no limit) and
+     *                `timeout` in ms (0 for none).
+     */
+    FastImagePreloader(@NonNull Context context, @NonNull ReadableArray sources, @Nullable ReadableMap options, @NonNull Promise promise) {
+        this.context = context.getApplicationContext();
+        this.requestManager = Glide.with(this.context);
+        this.sources = sources;
+        this.promise = promise;
+        this.id = getInt(options, "id");
+        this.maxConcurrency = getInt(options, "maxConcurrency");
+        this.timeoutMs = (long) getDouble(options, "timeout");
+
+        final int size = sources.size();
+        statuses = new String[size];
+        durations = new long[size];
+        errors = new String[size];
+        startTimes = new long[size];
+        targets = new Target[size];
+        requests = new FastImagePreloadRequest[size];
+        prepared = new String[size];
+        remaining = size;
+        // Registered right away, so the batch can be cancelled while its sources are parsed.
+        if (id != 0) {
+            ACTIVE.put(id, this);
+        }
+    }
+
+    /**
+     * Cancels the batch with the given id, sources that were not skipped or failed and did not
+     * finish yet are reported as `cancelled`.
+     */
+    static void cancel(final int id) {
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                FastImagePreloader preloader = ACTIVE.get(id);
+                if (preloader != null) {
+                    preloader.cancel();
+                }
+            }
+        });
+    }
+
+    private static int getInt(@Nullable ReadableMap options, String key) {
+        return options != null && options.hasKey(key) && !options.isNull(key) ? options.getInt(key) : 0;
+    }
+
+    private static double getDouble(@Nullable ReadableMap options, String key) {
+        return options != null && options.hasKey(key) && !options.isNull(key) ? options.getDouble(key) : 0;
+    }
+
+    /**
+     * Parses the sources on the given executor, then starts the requests on the UI thread.
+     */
+    void start(@NonNull Executor executor) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < statuses.length && !cancelledBeforeBegin; i++) {
+                    prepare(i);
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        begin();
+                    }
+                });
+            }
+        });
+    }
+
+    private void prepare(int index) {
+        try {
+            requests[index] = FastImagePreloadRequest.create(context, requestManager, sources.getMap(index));
+            if (requests[index] == null) {
+                prepared[index] = STATUS_SKIPPED;
+            }
+        } catch (Exception e) {
+            prepared[index] = STATUS_FAILED;
+            errors[index] = e.getMessage();
+        }
+    }
+
+    private void begin() {
+        startTime = SystemClock.elapsedRealtime();
+        begun = true;
+        if (cancelledBeforeBegin) {
+            // No request is started.
+            cancel();
+            return;
+        }
+        if (timeoutMs > 0) {
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    timedOut = true;
+                    cancel();
+                }
+            }, timeoutMs);
+        }
+        startNext();
+        resolveIfDone();
+    }
+
+    private void startNext() {
+        while (!done && nextIndex < statuses.length && (maxConcurrency <= 0 || running < maxConcurrency)) {
+            final int index = nextIndex++;
+            if (prepared[index] != null) {
+                finish(index, prepared[index], errors[index]);
+                continue;
+            }
+
+            running++;
+            startTimes[index] = SystemClock.elapsedRealtime();
+            targets[index] = requests[index].start(new RequestListener<Object>() {
+                @Override
+                public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<Object> target, boolean isFirstResource) {
+                    onRequestDone(index, STATUS_FAILED, e != null ? e.getMessage() : "Load Failed");
+                    return false;
+                }
+
+                @Override
+                public boolean onResourceReady(@NonNull Object resource, @NonNull Object model, Target<Object> target, @NonNull DataSource dataSource, boolean isFirstResource) {
+                    onRequestDone(index, getStatus(dataSource), null);
+                    return false;
+                }
+            });
+        }
+    }
+
+    private static String getStatus(DataSource dataSource) {
+        switch (dataSource) {
+            case MEMORY_CACHE:
+                return STATUS_MEMORY;
+            case DATA_DISK_CACHE:
+            case RESOURCE_DISK_CACHE:
+                return STATUS_DISK;
+            case LOCAL:
+                return STATUS_LOCAL;
+            case REMOTE:
+            default:
+                return STATUS_NETWORK;
+        }
+    }
+
+    private void onRequestDone(final int index, final String status, @Nullable final String error) {
+        // Listeners may be called synchronously from preload() for memory cache hits, post so the
+        // target is stored before it is released.
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (done || statuses[index] != null) {
+                    return;
+                }
+                running--;
+                targets[index] = null;
+                requests[index] = null;
+                finish(index, status, error);
+                startNext();
+                resolveIfDone();
+            }
+        });
+    }
+
+    private void finish(int index, String status, @Nullable String error) {
+        statuses[index] = status;
+        errors[index] = error;
+        durations[index] = startTimes[index] == 0 ? 0 : SystemClock.elapsedRealtime() - startTimes[index];
+        remaining--;
+    }
+
+    private void cancel() {
+        if (done) {
+            return;
+        }
+        if (!begun) {
+            // Cancelled by begin() once the sources are parsed.
+            cancelledBeforeBegin = true;
+            return;
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] != null) {
+                continue;
+            }
+            if (prepared[i] != null) {
+                // Skipped or failed while parsing, whether or not its turn came.
+                finish(i, prepared[i], errors[i]);
+                continue;
+            }
+            if (targets[i] != null) {
+                requestManager.clear(targets[i]);
+                targets[i] = null;
+            }
+            requests[i] = null;
+            finish(i, STATUS_CANCELLED, null);
+        }
+        running = 0;
+        resolveIfDone();
+    }
+
+    private void resolveIfDone() {
+        if (done || remaining > 0) {
+            return;
+        }
+        done = true;
+        handler.removeCallbacksAndMessages(null);
+        if (id != 0) {
+            ACTIVE.remove(id, this);
+        }
+
+        int finished = 0;
+        int skipped = 0;
+        int failed = 0;
+        int cancelled = 0;
+        WritableArray results = Arguments.createArray();
+        for (int i = 0; i < statuses.length; i++) {
+            final String status = statuses[i];
+            switch (status) {
+                case STATUS_SKIPPED:
+                    skipped++;
+                    break;
+                case STATUS_FAILED:
+                    failed++;
+                    break;
+                case STATUS_CANCELLED:
+                    cancelled++;
+                    break;
+                default:
+                    finished++;
+            }
+            WritableMap entry = Arguments.createMap();
+            final ReadableMap source = sources.getMap(i);
+            if (source != null && source.hasKey("uri") && source.getType("uri") == ReadableType.String) {
+                entry.putString("uri", source.getString("uri"));
+            }
+            entry.putString("status", status);
+            entry.putDouble("duration", durations[i]);
+            if (errors[i] != null) {
+                entry.putString("error", errors[i]);
+            }
+            results.pushMap(entry);
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("finished", finished);
+        result.putInt("skipped", skipped);
+        result.putInt("failed", failed);
+        result.putInt("cancelled", cancelled);
+        result.putBoolean("timedOut", timedOut);
+        result.putDouble("duration", SystemClock.elapsedRealtime() - startTime);
+        result.putArray("results", results);
+        promise.resolve(result);
+    }
+}
@@ -0,0 +1,111 @@
+package com.dylanvann.fastimage;
+
+import android.view.Choreographer;
+
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects the latest progress of every in-flight url and hands it to the views showing that url
+ * once per frame, instead of dispatching one event per network read.
+ */
+class FastImageProgressAggregator implements Choreographer.FrameCallback {
+
+    private final Map<String, List<FastImageViewWithUrl>> viewsForUrls;
+    private final ConcurrentMap<String, PendingProgress> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(FastImageProgressAggregator.this);
+        }
+    };
+
+    /**
+     * @param viewsForUrls views registered per url, only ever touched on the UI thread.
+     */
+    FastImageProgressAggregator(Map<String, List<FastImageViewWithUrl>> viewsForUrls) {
+        this.viewsForUrls = viewsForUrls;
+    }
+
+    /**
+     * Records the latest progress for a key. Safe to call from any thread.
+     */
+    void update(String key, long bytesRead, long expectedLength) {
+        while (true) {
+            PendingProgress progress = pending.get(key);
+            if (progress == null) {
+                progress = new PendingProgress();
+                PendingProgress existing = pending.putIfAbsent(key, progress);
+                if (existing != null) {
+                    progress = existing;
+                }
+            }
+            synchronized (progress) {
+                if (progress.removed) {
+                    // Flushed and dropped by the UI thread in the meantime, register a fresh one.
+                    continue;
+                }
+                progress.bytesRead = bytesRead;
+                progress.expectedLength = expectedLength;
+                progress.dirty = true;
+            }
+            break;
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            UiThreadUtil.runOnUiThread(scheduleFrame);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        final long frameTimeMillis = frameTimeNanos / 1_000_000L;
+
+        for (Map.Entry<String, PendingProgress> entry : pending.entrySet()) {
+            final String key = entry.getKey();
+            final PendingProgress progress = entry.getValue();
+            final long bytesRead;
+            final long expectedLength;
+            synchronized (progress) {
+                if (!progress.dirty) {
+                    // Nothing new since the last frame, the load finished or stalled.
+                    progress.removed = true;
+                    pending.remove(key, progress);
+                    continue;
+                }
+                progress.dirty = false;
+                bytesRead = progress.bytesRead;
+                expectedLength = progress.expectedLength;
+            }
+
+            List<FastImageViewWithUrl> viewsForKey = viewsForUrls.get(key);
+            if (viewsForKey == null) {
+                continue;
+            }
+            for (FastImageViewWithUrl view : viewsForKey) {
+                view.dispatchProgress(bytesRead, expectedLength, frameTimeMillis);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private static final class PendingProgress {
+        long bytesRead;
+        long expectedLength;
+        boolean dirty;
+        boolean removed;
+    }
+}
@@ -22,9 +22,11 @@ public class FastImageRequestListener<T extends Drawable> implements RequestList
     static final String REACT_ON_LOAD_EVENT = "onFastImageLoad";
     static final String REACT_ON_LOAD_END_EVENT = "onFastImageLoadEnd";
     private final String key;
+    private final boolean loadEventsEnabled;
 
-    FastImageRequestListener(String key) {
+    FastImageRequestListener(String key, boolean loadEventsEnabled) {
         this.key = key;
+        this.loadEventsEnabled = loadEventsEnabled;
     }
 
     private static WritableMap mapFromResource(Drawable resource) {
@@ -37,7 +39,7 @@ public class FastImageRequestListener<T extends Drawable> implements RequestList
     @Override
     public boolean onLoadFailed(@androidx.annotation.Nullable GlideException e, Object model, Target<T> target, boolean isFirstResource) {
         FastImageOkHttpProgressGlideModule.forget(key);
-        if (!(target instanceof ImageViewTarget)) {
+        if (!loadEventsEnabled || !(target instanceof ImageViewTarget)) {
             return false;
         }
         FastImageViewWithUrl view = (FastImageViewWithUrl) ((ImageViewTarget) target).getView();
@@ -56,7 +58,7 @@ public class FastImageRequestListener<T extends Drawable> implements RequestList
 
     @Override
     public boolean onResourceReady(T resource, Object model, Target<T> target, DataSource dataSource, boolean isFirstResource) {
-        if (!(target instanceof ImageViewTarget)) {
+        if (!loadEventsEnabled || !(target instanceof ImageViewTarget)) {
             return false;
         }
         FastImageViewWithUrl view = (FastImageViewWithUrl) ((ImageViewTarget) target).getView();
@@ -0,0 +1,443 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.signature.ObjectKey;
+import com.facebook.react.bridge.UiThreadUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Background revalidation for `cache: "staleWhileRevalidate"` images.
+ *
+ * Images are displayed from the memory or disk cache right away. Afterwards the url is fetched on
+ * a single low priority thread, conditionally with the ETag and Last-Modified of the response the
+ * cached copy came from. A changed body is written to the disk cache under the url's next content
+ * version while it is downloaded. The version is part of the Glide signature, so every view
+ * showing the url reloads the new image from disk while the old entries age out of the LRU caches.
+ *
+ * Versions, validators and the time each copy was last validated are kept in memory, loaded once
+ * in the background, so binding a view does no disk I/O. Views binding before that load finished
+ * treat their url as unknown and have it revalidated.
+ */
+class FastImageRevalidator {
+    private static final String TAG = "FastImageRevalidator";
+    private static final String PREFERENCES_NAME = "fastimage_content_versions";
+    // A url that was just validated is not checked again within this window.
+    private static final long MIN_REVALIDATE_INTERVAL_MS = 60_000;
+    // Urls beyond this are forgotten, least recently validated first.
+    private static final int MAX_ENTRIES = 2048;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, TAG));
+    private static final Set<String> IN_FLIGHT = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    // Views that loaded a staleWhileRevalidate image. Only used on the UI thread.
+    private static final Map<FastImageViewWithUrl, Boolean> VIEWS = new WeakHashMap<>();
+
+    @Nullable
+    private static OkHttpClient client = null;
+    // Guarded by the class.
+    @Nullable
+    private static SharedPreferences preferences = null;
+    private static volatile boolean loaded = false;
+
+    // The client used for revalidation, without the progress interceptor so views don't get
+    // progress events for background fetches.
+    static synchronized void setClient(@NonNull OkHttpClient okHttpClient) {
+        client = okHttpClient;
+    }
+
+    @Nullable
+    private static synchronized OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Loads the stored versions in the background, before the first view binds.
+     */
+    static void preload(@NonNull Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> load(applicationContext));
+    }
+
+    private static synchronized SharedPreferences load(Context context) {
+        if (preferences == null) {
+            preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+            for (Map.Entry<String, ?> stored : preferences.getAll().entrySet()) {
+                Entry entry = Entry.decode(stored.getValue());
+                if (entry != null) {
+                    ENTRIES.put(stored.getKey(), entry);
+                }
+            }
+            loaded = true;
+        }
+        return preferences;
+    }
+
+    // Never reads the disk, unknown until the stored versions are loaded.
+    @NonNull
+    private static Entry getEntry(GlideUrl url) {
+        Entry entry = loaded ? ENTRIES.get(url.getCacheKey()) : null;
+        return entry == null ? Entry.NONE : entry;
+    }
+
+    // Runs on the executor.
+    @NonNull
+    private static Entry getLoadedEntry(Context context, GlideUrl url) {
+        load(context);
+        return getEntry(url);
+    }
+
+    /**
+     * @return the signature to load the url with, null while its content never changed so the
+     * cache keys stay the same as for `immutable` images.
+     */
+    @Nullable
+    static Key getSignature(@NonNull GlideUrl url) {
+        return getSignature(getEntry(url).version);
+    }
+
+    @Nullable
+    private static Key getSignature(int version) {
+        return version == 0 ? null : new ObjectKey(version);
+    }
+
+    // The signature a view loads the version with, see FastImageViewConverter.getOptions.
+    private static Key getCacheSignature(GlideUrl url, @Nullable String partition, int version) {
+        return new FastImageCacheSignature(url.getCacheKey(), partition, getSignature(version));
+    }
+
+    /**
+     * Moves the url to a new content version when its cached copy was validated longer ago than
+     * the max-stale window, so it is fetched again instead of being displayed.
+     *
+     * @param partition the disk cache partition the url is loaded with.
+     * @param maxStaleMs 0 for no limit.
+     */
+    static void expireIfTooStale(@NonNull Context context, @NonNull GlideUrl url, @Nullable String partition, long maxStaleMs) {
+        if (maxStaleMs <= 0) {
+            return;
+        }
+        final Entry entry = getEntry(url);
+        if (entry.validatedAt > 0 && System.currentTimeMillis() - entry.validatedAt > maxStaleMs) {
+            final Context applicationContext = context.getApplicationContext();
+            final String cacheKey = url.getCacheKey();
+            // Validated again once the new version is downloaded.
+            final Entry expired = new Entry(entry.version + 1, 0, null, null);
+            ENTRIES.put(cacheKey, expired);
+            EXECUTOR.execute(() -> {
+                save(applicationContext, cacheKey, expired);
+                FastImageDiskCache.forPartition(applicationContext, partition)
+                        .delete(FastImageCacheKeys.getDataKey(url, getCacheSignature(url, partition, entry.version)));
+            });
+        }
+    }
+
+    /**
+     * Forgets the url's version, once its disk cache entries are evicted.
+     */
+    static void forget(@NonNull Context context, @NonNull GlideUrl url) {
+        final Context applicationContext = context.getApplicationContext();
+        final String cacheKey = url.getCacheKey();
+        EXECUTOR.execute(() -> {
+            SharedPreferences stored = load(applicationContext);
+            ENTRIES.remove(cacheKey);
+            stored.edit().remove(cacheKey).apply();
+        });
+    }
+
+    /**
+     * Forgets every version, once the disk cache is cleared.
+     */
+    static void clear(@NonNull Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> {
+            SharedPreferences stored = load(applicationContext);
+            ENTRIES.clear();
+            stored.edit().clear().apply();
+        });
+    }
+
+    // Runs on the executor.
+    private static void save(Context context, String cacheKey, Entry entry) {
+        SharedPreferences.Editor editor = load(context).edit();
+        ENTRIES.put(cacheKey, entry);
+        editor.putString(cacheKey, entry.encode());
+        if (ENTRIES.size() > MAX_ENTRIES) {
+            String oldest = null;
+            long oldestValidatedAt = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> candidate : ENTRIES.entrySet()) {
+                if (candidate.getValue().validatedAt < oldestValidatedAt) {
+                    oldest = candidate.getKey();
+                    oldestValidatedAt = candidate.getValue().validatedAt;
+                }
+            }
+            if (oldest != null) {
+                ENTRIES.remove(oldest);
+                editor.remove(oldest);
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * Starts a background revalidation once the view displayed a cached copy of the url, and
+     * keeps the validators of a freshly downloaded one.
+     */
+    static class RevalidateListener<T extends Drawable> implements RequestListener<T> {
+        private final Context context;
+        private final GlideUrl url;
+        @Nullable
+        private final String partition;
+
+        RevalidateListener(@NonNull FastImageViewWithUrl view, @NonNull GlideUrl url, @Nullable String partition) {
+            this.context = view.getContext().getApplicationContext();
+            this.url = url;
+            this.partition = partition;
+            VIEWS.put(view, Boolean.TRUE);
+        }
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<T> target, boolean isFirstResource) {
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(@NonNull T resource, @NonNull Object model, Target<T> target, @NonNull DataSource dataSource, boolean isFirstResource) {
+            if (dataSource == DataSource.REMOTE) {
+                // Freshly downloaded images don't need a second look.
+                recordDownload(context, url);
+            } else {
+                revalidate(context, url, partition);
+            }
+            return false;
+        }
+    }
+
+    private static void recordDownload(Context context, GlideUrl url) {
+        final long downloadedAt = System.currentTimeMillis();
+        EXECUTOR.execute(() -> {
+            FastImageHttpValidators.Validator validator = FastImageHttpValidators.getLastValidator(url.toStringUrl());
+            Entry entry = getLoadedEntry(context, url);
+            save(context, url.getCacheKey(), new Entry(
+                    entry.version,
+                    downloadedAt,
+                    validator == null ? null : validator.etag,
+                    validator == null ? null : validator.lastModified));
+        });
+    }
+
+    private static void revalidate(Context context, GlideUrl url, @Nullable String partition) {
+        final String cacheKey = url.getCacheKey();
+        Entry entry = getEntry(url);
+        if (System.currentTimeMillis() - entry.validatedAt < MIN_REVALIDATE_INTERVAL_MS) {
+            return;
+        }
+        if (!IN_FLIGHT.add(cacheKey)) {
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                if (hasChanged(context, url, partition)) {
+                    UiThreadUtil.runOnUiThread(() -> refreshViews(url));
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Revalidation failed for " + url, e);
+            } finally {
+                IN_FLIGHT.remove(cacheKey);
+            }
+        });
+    }
+
+    private static void refreshViews(GlideUrl url) {
+        for (FastImageViewWithUrl view : new ArrayList<>(VIEWS.keySet())) {
+            if (url.equals(view.glideUrl)) {
+                view.refresh();
+            }
+        }
+    }
+
+    /**
+     * Fetches the url conditionally. A changed body is stored under the next version.
+     *
+     * @return whether the url moved to a new version.
+     */
+    private static boolean hasChanged(Context context, GlideUrl url, @Nullable String partition) throws IOException {
+        final OkHttpClient okHttpClient = getClient();
+        if (okHttpClient == null) {
+            return false;
+        }
+        final String cacheKey = url.getCacheKey();
+        final Entry entry = getLoadedEntry(context, url);
+        final Key cachedSignature = getCacheSignature(url, partition, entry.version);
+        final File file = FastImageCacheKeys.getDataCacheFile(context, url, cachedSignature);
+        if (!file.exists()) {
+            // Only transformed resources are cached, there are no original bytes to compare with.
+            return false;
+        }
+
+        Request.Builder builder = new Request.Builder().url(url.toStringUrl());
+        for (Map.Entry<String, String> header : url.getHeaders().entrySet()) {
+            builder.addHeader(header.getKey(), header.getValue());
+        }
+        if (entry.etag != null) {
+            builder.header("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            builder.header("If-Modified-Since", entry.lastModified);
+        }
+
+        try (Response response = okHttpClient.newCall(builder.build()).execute()) {
+            final long validatedAt = System.currentTimeMillis();
+            final String etag = response.header("ETag", entry.etag);
+            final String lastModified = response.header("Last-Modified", entry.lastModified);
+            if (response.code() == 304) {
+                save(context, cacheKey, new Entry(entry.version, validatedAt, etag, lastModified));
+                return false;
+            }
+            final ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                return false;
+            }
+
+            // Written under the next version right away, the views refresh from disk.
+            final int nextVersion = entry.version + 1;
+            final FastImageDiskCache diskCache = FastImageDiskCache.forPartition(context, partition);
+            final Key nextKey = FastImageCacheKeys.getDataKey(url, getCacheSignature(url, partition, nextVersion));
+            final byte[][] remote = new byte[1][];
+            diskCache.delete(nextKey);
+            diskCache.put(nextKey, target -> {
+                try (InputStream input = body.byteStream(); OutputStream output = new FileOutputStream(target)) {
+                    remote[0] = copy(input, output);
+                    return true;
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to store revalidated " + url, e);
+                    return false;
+                }
+            });
+            if (remote[0] == null) {
+                return false;
+            }
+
+            byte[] cached;
+            try (InputStream input = new FileInputStream(file)) {
+                cached = copy(input, null);
+            }
+            if (Arrays.equals(remote[0], cached)) {
+                diskCache.delete(nextKey);
+                save(context, cacheKey, new Entry(entry.version, validatedAt, etag, lastModified));
+                return false;
+            }
+            save(context, cacheKey, new Entry(nextVersion, validatedAt, etag, lastModified));
+            diskCache.delete(FastImageCacheKeys.getDataKey(url, cachedSignature));
+            return true;
+        }
+    }
+
+    /**
+     * @return the SHA-256 digest of the input, which is copied to the output if there is one.
+     */
+    private static byte[] copy(InputStream input, @Nullable OutputStream output) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            messageDigest.update(buffer, 0, read);
+            if (output != null) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * What is known about the cached copy of a url.
+     */
+    private static final class Entry {
+        static final Entry NONE = new Entry(0, 0, null, null);
+
+        final int version;
+        // 0 while unknown.
+        final long validatedAt;
+        @Nullable
+        final String etag;
+        @Nullable
+        final String lastModified;
+
+        Entry(int version, long validatedAt, @Nullable String etag, @Nullable String lastModified) {
+            this.version = version;
+            this.validatedAt = validatedAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        // Header values never contain line breaks.
+        String encode() {
+            return version + "\n" + validatedAt + "\n"
+                    + (etag == null ? "" : etag) + "\n"
+                    + (lastModified == null ? "" : lastModified);
+        }
+
+        @Nullable
+        static Entry decode(@Nullable Object value) {
+            if (!(value instanceof String)) {
+                return null;
+            }
+            String[] parts = ((String) value).split("\n", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                return new Entry(
+                        Integer.parseInt(parts[0]),
+                        Long.parseLong(parts[1]),
+                        parts[2].isEmpty() ? null : parts[2],
+                        parts[3].isEmpty() ? null : parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
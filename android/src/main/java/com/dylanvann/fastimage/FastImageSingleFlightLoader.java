@@ -0,0 +1,403 @@
+package com.dylanvann.fastimage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent loads of the same url and headers into a single network fetch.
+ *
+ * Wraps Glide's OkHttp loader. The first fetcher of a url (the leader) loads as usual. Fetchers
+ * starting while the leader waits for the response headers join it without holding a thread.
+ * Only when someone joined does the leader keep a copy of the body while it is read, and every
+ * waiter gets its own stream over that copy. Fetchers starting after the leader got its response,
+ * or whose leader failed, was cancelled or had a body too large to share, fetch on their own.
+ */
+class FastImageSingleFlightLoader implements ModelLoader<GlideUrl, InputStream> {
+    // Bodies larger than this are not kept in memory for sharing.
+    private static final int MAX_SHARED_BODY_BYTES = 16 * 1024 * 1024;
+
+    private static final ConcurrentMap<String, Flight> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final AtomicLong DEDUPLICATED_FETCHES = new AtomicLong();
+
+    private final ModelLoader<GlideUrl, InputStream> delegate;
+
+    FastImageSingleFlightLoader(@NonNull ModelLoader<GlideUrl, InputStream> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return number of fetches served from another in-flight fetch instead of the network.
+     */
+    static long getDeduplicatedFetchCount() {
+        return DEDUPLICATED_FETCHES.get();
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull GlideUrl model, int width, int height, @NonNull Options options) {
+        if (Boolean.TRUE.equals(options.get(FastImageHttpCacheScope.USE_HTTP_CACHE))) {
+            model = FastImageHttpCacheScope.allowHttpCache(model);
+        }
+        LoadData<InputStream> loadData = delegate.buildLoadData(model, width, height, options);
+        if (loadData == null) {
+            return null;
+        }
+        String key = model.getCacheKey() + '\n' + model.getHeaders();
+        return new LoadData<>(loadData.sourceKey, loadData.alternateKeys, new SingleFlightFetcher(key, loadData.fetcher));
+    }
+
+    @Override
+    public boolean handles(@NonNull GlideUrl model) {
+        return delegate.handles(model);
+    }
+
+    static class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
+        private final ModelLoaderFactory<GlideUrl, InputStream> delegate;
+
+        Factory(@NonNull ModelLoaderFactory<GlideUrl, InputStream> delegate) {
+            this.delegate = delegate;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<GlideUrl, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new FastImageSingleFlightLoader(delegate.build(multiFactory));
+        }
+
+        @Override
+        public void teardown() {
+            delegate.teardown();
+        }
+    }
+
+    private static final class Flight {
+        private final List<SingleFlightFetcher> waiters = new ArrayList<>();
+        // No fetcher can join once the leader got its response.
+        private boolean closed = false;
+        private boolean settled = false;
+
+        synchronized boolean join(SingleFlightFetcher waiter) {
+            if (closed) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        synchronized boolean leave(SingleFlightFetcher waiter) {
+            return waiters.remove(waiter);
+        }
+
+        /**
+         * @return whether any fetcher joined.
+         */
+        synchronized boolean close() {
+            closed = true;
+            return !waiters.isEmpty();
+        }
+
+        /**
+         * @return the waiters still waiting, empty if the flight was already settled.
+         */
+        synchronized List<SingleFlightFetcher> settle() {
+            closed = true;
+            if (settled) {
+                return new ArrayList<>();
+            }
+            settled = true;
+            List<SingleFlightFetcher> remaining = new ArrayList<>(waiters);
+            waiters.clear();
+            return remaining;
+        }
+    }
+
+    private static final class SingleFlightFetcher implements DataFetcher<InputStream> {
+        private final String key;
+        private final DataFetcher<InputStream> fetcher;
+
+        // Guarded by this.
+        private Priority priority = Priority.NORMAL;
+        @Nullable
+        private DataCallback<? super InputStream> callback = null;
+        @Nullable
+        private Flight flight = null;
+        private boolean leader = false;
+        private boolean fetching = false;
+        private boolean cancelled = false;
+        @Nullable
+        private SharingInputStream sharingStream = null;
+
+        SingleFlightFetcher(String key, DataFetcher<InputStream> fetcher) {
+            this.key = key;
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            final Flight newFlight = new Flight();
+            final Flight existing;
+            synchronized (this) {
+                this.priority = priority;
+                this.callback = callback;
+                existing = IN_FLIGHT.putIfAbsent(key, newFlight);
+                if (existing == null) {
+                    flight = newFlight;
+                    leader = true;
+                } else if (existing.join(this)) {
+                    // Resumed by the leader.
+                    flight = existing;
+                    return;
+                }
+            }
+            if (existing == null) {
+                lead(newFlight, callback);
+            } else {
+                fetch();
+            }
+        }
+
+        private void lead(final Flight flight, final DataCallback<? super InputStream> callback) {
+            fetcher.loadData(priority, new DataCallback<InputStream>() {
+                @Override
+                public void onDataReady(@Nullable InputStream data) {
+                    IN_FLIGHT.remove(key, flight);
+                    if (data == null || !flight.close()) {
+                        // Nobody joined, the body is streamed without a copy.
+                        abandon(flight);
+                        callback.onDataReady(data);
+                        return;
+                    }
+                    SharingInputStream stream = new SharingInputStream(data, flight);
+                    synchronized (SingleFlightFetcher.this) {
+                        sharingStream = stream;
+                    }
+                    callback.onDataReady(stream);
+                }
+
+                @Override
+                public void onLoadFailed(@NonNull Exception e) {
+                    abandon(flight);
+                    callback.onLoadFailed(e);
+                }
+            });
+        }
+
+        // Runs the delegate for this fetcher alone, as a waiter whose leader could not share.
+        private void fetch() {
+            final Priority priority;
+            final DataCallback<? super InputStream> callback;
+            synchronized (this) {
+                if (cancelled || fetching || this.callback == null) {
+                    return;
+                }
+                fetching = true;
+                priority = this.priority;
+                callback = this.callback;
+            }
+            fetcher.loadData(priority, callback);
+        }
+
+        private void deliver(byte[] body) {
+            final DataCallback<? super InputStream> callback;
+            synchronized (this) {
+                if (cancelled || this.callback == null) {
+                    return;
+                }
+                callback = this.callback;
+            }
+            DEDUPLICATED_FETCHES.incrementAndGet();
+            callback.onDataReady(new ByteArrayInputStream(body));
+        }
+
+        @Override
+        public void cleanup() {
+            final SharingInputStream stream;
+            synchronized (this) {
+                stream = sharingStream;
+            }
+            if (stream != null) {
+                // Waiters fetch on their own if the body was not read to the end.
+                stream.abandon();
+            }
+            fetcher.cleanup();
+        }
+
+        @Override
+        public void cancel() {
+            final Flight flight;
+            final boolean leader;
+            final boolean fetching;
+            synchronized (this) {
+                cancelled = true;
+                flight = this.flight;
+                leader = this.leader;
+                fetching = this.fetching;
+            }
+            if (leader) {
+                if (flight != null) {
+                    abandon(flight);
+                }
+                fetcher.cancel();
+            } else if (fetching) {
+                fetcher.cancel();
+            } else if (flight != null) {
+                flight.leave(this);
+            }
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.REMOTE;
+        }
+
+        private void abandon(Flight flight) {
+            IN_FLIGHT.remove(key, flight);
+            for (SingleFlightFetcher waiter : flight.settle()) {
+                waiter.fetch();
+            }
+        }
+
+        private static void complete(Flight flight, byte[] body) {
+            for (SingleFlightFetcher waiter : flight.settle()) {
+                waiter.deliver(body);
+            }
+        }
+
+        /**
+         * The leader's body, copied while it is read and handed to the waiters at its end.
+         */
+        private final class SharingInputStream extends FilterInputStream {
+            private final Flight flight;
+            @Nullable
+            private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+            SharingInputStream(InputStream in, Flight flight) {
+                super(in);
+                this.flight = flight;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int value;
+                try {
+                    value = super.read();
+                } catch (IOException e) {
+                    abandon();
+                    throw e;
+                }
+                if (value == -1) {
+                    finish();
+                } else {
+                    record(new byte[]{(byte) value}, 0, 1);
+                }
+                return value;
+            }
+
+            @Override
+            public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                int count;
+                try {
+                    count = super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    abandon();
+                    throw e;
+                }
+                if (count == -1) {
+                    finish();
+                } else {
+                    record(buffer, offset, count);
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // Skipped bytes can't be shared.
+                abandon();
+                return super.skip(n);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public synchronized void mark(int readLimit) {
+                // Not supported.
+            }
+
+            @Override
+            public synchronized void reset() throws IOException {
+                throw new IOException("mark/reset not supported");
+            }
+
+            @Override
+            public void close() throws IOException {
+                abandon();
+                super.close();
+            }
+
+            private synchronized void record(byte[] buffer, int offset, int count) {
+                if (copy == null) {
+                    return;
+                }
+                if (copy.size() + count > MAX_SHARED_BODY_BYTES) {
+                    abandon();
+                    return;
+                }
+                copy.write(buffer, offset, count);
+            }
+
+            private void finish() {
+                final byte[] body;
+                synchronized (this) {
+                    if (copy == null) {
+                        return;
+                    }
+                    body = copy.toByteArray();
+                    copy = null;
+                }
+                complete(flight, body);
+            }
+
+            // No-op once the body was shared.
+            void abandon() {
+                synchronized (this) {
+                    if (copy == null) {
+                        return;
+                    }
+                    copy = null;
+                }
+                SingleFlightFetcher.this.abandon(flight);
+            }
+        }
+    }
+}
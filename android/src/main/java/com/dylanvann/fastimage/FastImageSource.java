@@ -20,6 +20,9 @@ public class FastImageSource {
     private final Headers mHeaders;
     private Uri mUri;
     private String mSource;
+    // Created once, sources are shared through the parsed source cache.
+    @Nullable
+    private volatile GlideUrl mGlideUrl = null;
 
     public static boolean isBase64Uri(Uri uri) {
         return DATA_SCHEME.equals(uri.getScheme());
@@ -104,7 +107,12 @@ public class FastImageSource {
     }
 
     public GlideUrl getGlideUrl() {
-        return new GlideUrl(getUri().toString(), getHeaders());
+        GlideUrl glideUrl = mGlideUrl;
+        if (glideUrl == null) {
+            glideUrl = new GlideUrl(getUri().toString(), getHeaders());
+            mGlideUrl = glideUrl;
+        }
+        return glideUrl;
     }
 
     public String getSource() {
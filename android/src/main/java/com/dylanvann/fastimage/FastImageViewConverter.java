@@ -1,22 +1,25 @@
 package com.dylanvann.fastimage;
 
-import static com.bumptech.glide.request.RequestOptions.signatureOf;
-
 import android.content.Context;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.util.LruCache;
 import android.widget.ImageView;
 import android.widget.ImageView.ScaleType;
 
 import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.Key;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.load.model.Headers;
 import com.bumptech.glide.load.model.LazyHeaders;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.BaseRequestOptions;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.signature.ApplicationVersionSignature;
+import com.bumptech.glide.signature.ObjectKey;
 import com.facebook.react.bridge.JSApplicationIllegalArgumentException;
-import com.facebook.react.bridge.NoSuchKeyException;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
@@ -24,6 +27,7 @@ import com.facebook.react.bridge.ReadableType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
@@ -35,6 +39,7 @@ class FastImageViewConverter {
                 put("immutable", FastImageCacheControl.IMMUTABLE);
                 put("web", FastImageCacheControl.WEB);
                 put("cacheOnly", FastImageCacheControl.CACHE_ONLY);
+                put("staleWhileRevalidate", FastImageCacheControl.STALE_WHILE_REVALIDATE);
             }};
 
     private static final Map<String, Priority> FAST_IMAGE_PRIORITY_MAP =
@@ -44,6 +49,15 @@ class FastImageViewConverter {
                 put("high", Priority.HIGH);
             }};
 
+    private static final Map<String, DiskCacheStrategy> FAST_IMAGE_DISK_CACHE_STRATEGY_MAP =
+            new HashMap<String, DiskCacheStrategy>() {{
+                put("automatic", DiskCacheStrategy.AUTOMATIC);
+                put("data", DiskCacheStrategy.DATA);
+                put("resource", DiskCacheStrategy.RESOURCE);
+                put("all", DiskCacheStrategy.ALL);
+                put("none", DiskCacheStrategy.NONE);
+            }};
+
     private static final Map<String, ImageView.ScaleType> FAST_IMAGE_RESIZE_MODE_MAP =
             new HashMap<String, ImageView.ScaleType>() {{
                 put("contain", ScaleType.FIT_CENTER);
@@ -52,12 +66,75 @@ class FastImageViewConverter {
                 put("center", ScaleType.CENTER_INSIDE);
             }};
 
+    // Parsed sources by uri and headers, lists re-render the same sources over and over.
+    private static final int SOURCE_CACHE_SIZE = 256;
+    // Longer uris (e.g. base64 data) are parsed every time instead of being kept as cache keys.
+    private static final int MAX_CACHED_URI_LENGTH = 2048;
+    private static final LruCache<String, FastImageSource> SOURCE_CACHE = new LruCache<>(SOURCE_CACHE_SIZE);
+
+    // Immutable base options by disk cache strategy, cache flags and priority. They are locked with
+    // autoClone(), so deriving options from them leaves the shared instance untouched.
+    private static final Map<String, RequestOptions> BASE_OPTIONS = new ConcurrentHashMap<>();
+
     // Resolve the source uri to a file path that android understands.
     static @Nullable
     FastImageSource getImageSource(Context context, @Nullable ReadableMap source) {
-        return source == null
-                ? null
-                : new FastImageSource(context, source.getString("uri"), getHeaders(source));
+        if (source == null) {
+            return null;
+        }
+        final String uri = getString(source, "uri");
+        if (uri == null || uri.length() > MAX_CACHED_URI_LENGTH) {
+            return new FastImageSource(context, uri, getHeaders(source));
+        }
+        final String key = getSourceKey(uri, source);
+        FastImageSource imageSource = SOURCE_CACHE.get(key);
+        if (imageSource == null) {
+            imageSource = new FastImageSource(context, uri, getHeaders(source));
+            SOURCE_CACHE.put(key, imageSource);
+        }
+        return imageSource;
+    }
+
+    // The uri followed by the headers in the order they were given. Every field is prefixed with
+    // its length (-1 for null), so no two sources with different headers share a key.
+    private static String getSourceKey(String uri, ReadableMap source) {
+        final StringBuilder key = new StringBuilder(uri.length() + 8);
+        appendKeyField(key, uri);
+        if (!source.hasKey("headers") || source.isNull("headers")) {
+            return key.toString();
+        }
+        if (source.getType("headers") == ReadableType.Map) {
+            key.append('m');
+            ReadableMap headersMap = source.getMap("headers");
+            ReadableMapKeySetIterator iterator = headersMap.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String header = iterator.nextKey();
+                appendKeyField(key, header);
+                appendKeyField(key, getString(headersMap, header));
+            }
+            return key.toString();
+        }
+        key.append('a');
+        ReadableArray headersArray = source.getArray("headers");
+        for (int i = 0; headersArray != null && i < headersArray.size(); i++) {
+            ReadableMap headerEntry = headersArray.getMap(i);
+            appendKeyField(key, getString(headerEntry, "name"));
+            appendKeyField(key, getString(headerEntry, "value"));
+        }
+        return key.toString();
+    }
+
+    private static void appendKeyField(StringBuilder key, @Nullable String value) {
+        if (value == null) {
+            key.append("-1:");
+            return;
+        }
+        key.append(value.length()).append(':').append(value);
+    }
+
+    @Nullable
+    private static String getString(@Nullable ReadableMap map, String key) {
+        return map != null && map.hasKey(key) && !map.isNull(key) ? map.getString(key) : null;
     }
 
     static Headers getHeaders(ReadableMap source) {
@@ -121,29 +198,88 @@ class FastImageViewConverter {
         DiskCacheStrategy diskCacheStrategy = DiskCacheStrategy.AUTOMATIC;
         boolean onlyFromCache = false;
         boolean skipMemoryCache = false;
+        String validator = null;
         switch (cacheControl) {
             case WEB:
-                // If using none then OkHttp integration should be used for caching.
+                // Disk caching is left to the OkHttp cache, which honours Cache-Control and
+                // revalidates with ETag/Last-Modified.
                 diskCacheStrategy = DiskCacheStrategy.NONE;
-                skipMemoryCache = true;
+                // While the last response is fresh, the decoded image can come from the memory
+                // cache. The validator is part of the key so changed content is never reused.
+                validator = getFreshValidator(imageSource);
+                skipMemoryCache = validator == null;
                 break;
             case CACHE_ONLY:
                 onlyFromCache = true;
                 break;
+            case STALE_WHILE_REVALIDATE:
+                // Cached like immutable images, the view revalidates them in the background.
+                Object swrModel = imageSource.getSourceForLoad();
+                if (swrModel instanceof GlideUrl) {
+                    GlideUrl url = (GlideUrl) swrModel;
+                    FastImageRevalidator.expireIfTooStale(context, url, getCachePartition(source), getMaxStaleMs(source));
+                }
+                break;
             case IMMUTABLE:
                 // Use defaults.
                 break;
         }
+        if (cacheControl != FastImageCacheControl.WEB) {
+            // `resource` and `all` also store the decoded, downsampled image for the view's size,
+            // so re-mounts read a small file instead of decoding the original again.
+            diskCacheStrategy = getDiskCacheStrategy(source);
+        }
+
+        final long maxAgeMs = getMaxAgeMs(source);
+        if (maxAgeMs > 0 && diskCacheStrategy != DiskCacheStrategy.NONE) {
+            final String modelKey = String.valueOf(imageSource.getSourceForLoad());
+            FastImageDiskCache.forPartition(context, getCachePartition(source)).setMaxAge(modelKey, maxAgeMs);
+        }
 
-        RequestOptions options = new RequestOptions()
-                .diskCacheStrategy(diskCacheStrategy)
-                .onlyRetrieveFromCache(onlyFromCache)
-                .skipMemoryCache(skipMemoryCache)
-                .priority(priority)
-                .placeholder(TRANSPARENT_DRAWABLE);
+        RequestOptions options = getBaseOptions(diskCacheStrategy, onlyFromCache, skipMemoryCache, priority);
+
+        if (cacheControl == FastImageCacheControl.WEB) {
+            options = options.set(FastImageHttpCacheScope.USE_HTTP_CACHE, true);
+        }
+
+        final Object view = imageOptions == null ? null : imageOptions.get("view");
+        if (view instanceof ImageView) {
+            // Glide only tunes decoding to the scale type when no other transformation (e.g. blur)
+            // is set, the bitmap is decoded for the crop either way.
+            options = options.downsample(getDownsampleStrategy(((ImageView) view).getScaleType()));
+        }
 
         options = FastImageBlurHelper.transform(context, options, imageOptions);
 
+        return options.signature(getSignature(context, imageSource, source, cacheControl, validator));
+    }
+
+    /**
+     * @return the signature {@link #getOptions} loads the source with, without any of its side
+     * effects, to look up the source's cache entries.
+     */
+    static Key getCacheSignature(Context context, FastImageSource imageSource, ReadableMap source) {
+        final FastImageCacheControl cacheControl = getCacheControl(source);
+        final String validator = cacheControl == FastImageCacheControl.WEB ? getFreshValidator(imageSource) : null;
+        return getSignature(context, imageSource, source, cacheControl, validator);
+    }
+
+    // Only reads state, so queries for a source don't change its cache entries.
+    private static Key getSignature(
+            Context context,
+            FastImageSource imageSource,
+            ReadableMap source,
+            FastImageCacheControl cacheControl,
+            @Nullable String validator
+    ) {
+        final Object model = imageSource.getSourceForLoad();
+        Key signature = null;
+        if (validator != null) {
+            signature = new ObjectKey(validator);
+        } else if (cacheControl == FastImageCacheControl.STALE_WHILE_REVALIDATE && model instanceof GlideUrl) {
+            signature = FastImageRevalidator.getSignature((GlideUrl) model);
+        }
+
         if (imageSource.isResource()) {
             // Every local resource (drawable) in Android has its own unique numeric id, which are
             // generated at build time. Although these ids are unique, they are not guaranteed unique
@@ -151,20 +287,125 @@ class FastImageViewConverter {
             // sure the cache does not return the wrong image, we should clear the cache when the
             // application version changes. Adding a cache signature for only these local resources
             // solves this issue: https://github.com/DylanVann/react-native-fast-image/issues/402
-            options = options.apply(signatureOf(ApplicationVersionSignature.obtain(context)));
+            signature = ApplicationVersionSignature.obtain(context);
         }
 
+        // The disk cache reads the partition from the signature, a request doesn't change where
+        // other requests of the model are stored.
+        return new FastImageCacheSignature(String.valueOf(model), getCachePartition(source), signature);
+    }
+
+    @Nullable
+    private static String getFreshValidator(FastImageSource imageSource) {
+        final Object model = imageSource.getSourceForLoad();
+        return model instanceof GlideUrl ? FastImageHttpValidators.getFreshValidator(((GlideUrl) model).toStringUrl()) : null;
+    }
+
+    private static RequestOptions getBaseOptions(
+            DiskCacheStrategy diskCacheStrategy,
+            boolean onlyFromCache,
+            boolean skipMemoryCache,
+            Priority priority
+    ) {
+        final String key = getDiskCacheStrategyName(diskCacheStrategy) + '|' + onlyFromCache + '|' + skipMemoryCache + '|' + priority;
+        RequestOptions options = BASE_OPTIONS.get(key);
+        if (options == null) {
+            options = new RequestOptions()
+                    .diskCacheStrategy(diskCacheStrategy)
+                    .onlyRetrieveFromCache(onlyFromCache)
+                    .skipMemoryCache(skipMemoryCache)
+                    .priority(priority)
+                    .placeholder(TRANSPARENT_DRAWABLE)
+                    .autoClone();
+            BASE_OPTIONS.put(key, options);
+        }
         return options;
     }
 
-    private static FastImageCacheControl getCacheControl(ReadableMap source) {
+    private static String getDiskCacheStrategyName(DiskCacheStrategy diskCacheStrategy) {
+        for (Map.Entry<String, DiskCacheStrategy> entry : FAST_IMAGE_DISK_CACHE_STRATEGY_MAP.entrySet()) {
+            if (entry.getValue() == diskCacheStrategy) {
+                return entry.getKey();
+            }
+        }
+        return String.valueOf(diskCacheStrategy);
+    }
+
+    static FastImageCacheControl getCacheControl(ReadableMap source) {
         return getValueFromSource("cache", "immutable", FAST_IMAGE_CACHE_CONTROL_MAP, source);
     }
 
+    private static DiskCacheStrategy getDiskCacheStrategy(ReadableMap source) {
+        return getValueFromSource("diskCacheStrategy", "automatic", FAST_IMAGE_DISK_CACHE_STRATEGY_MAP, source);
+    }
+
+    private static long getMaxStaleMs(ReadableMap source) {
+        if (source == null || !source.hasKey("maxStale") || source.isNull("maxStale")) {
+            return 0;
+        }
+        return (long) (source.getDouble("maxStale") * 1000);
+    }
+
+    @Nullable
+    static String getCachePartition(ReadableMap source) {
+        return getString(source, "cachePartition");
+    }
+
+    private static long getMaxAgeMs(ReadableMap source) {
+        if (source == null || !source.hasKey("maxAge") || source.isNull("maxAge")) {
+            return 0;
+        }
+        return (long) (source.getDouble("maxAge") * 1000);
+    }
+
     private static Priority getPriority(ReadableMap source) {
         return getValueFromSource("priority", "normal", FAST_IMAGE_PRIORITY_MAP, source);
     }
 
+    /**
+     * The sampling Glide uses for the scale type's transformation in `into(ImageView)`: `cover`
+     * decodes at least the view size in both dimensions, `contain` and `center` only as much as
+     * fits.
+     */
+    static DownsampleStrategy getDownsampleStrategy(ScaleType scaleType) {
+        switch (scaleType) {
+            case CENTER_CROP:
+                return DownsampleStrategy.CENTER_OUTSIDE;
+            case CENTER_INSIDE:
+            case FIT_XY:
+                return DownsampleStrategy.CENTER_INSIDE;
+            case FIT_CENTER:
+            case FIT_START:
+            case FIT_END:
+                return DownsampleStrategy.FIT_CENTER;
+            default:
+                return DownsampleStrategy.DEFAULT;
+        }
+    }
+
+    /**
+     * The transformation Glide adds in `into(ImageView)` for the view's scale type, which is part
+     * of the memory cache key.
+     */
+    static <T extends BaseRequestOptions<T>> T applyScaleType(T options, ScaleType scaleType) {
+        if (options.isTransformationSet() || !options.isTransformationAllowed()) {
+            return options;
+        }
+        switch (scaleType) {
+            case CENTER_CROP:
+                return options.optionalCenterCrop();
+            case CENTER_INSIDE:
+            case FIT_XY:
+                return options.optionalCenterInside();
+            case FIT_CENTER:
+            case FIT_START:
+            case FIT_END:
+                return options.optionalFitCenter();
+            default:
+                return options;
+        }
+    }
+
     static ScaleType getScaleType(String propValue) {
         return getValue("resizeMode", "cover", FAST_IMAGE_RESIZE_MODE_MAP, propValue);
     }
@@ -178,12 +419,6 @@ class FastImageViewConverter {
     }
 
     private static <T> T getValueFromSource(String propName, String defaultProp, Map<String, T> map, ReadableMap source) {
-        String propValue;
-        try {
-            propValue = source != null ? source.getString(propName) : null;
-        } catch (NoSuchKeyException e) {
-            propValue = null;
-        }
-        return getValue(propName, defaultProp, map, propValue);
+        return getValue(propName, defaultProp, map, getString(source, propName));
     }
 }
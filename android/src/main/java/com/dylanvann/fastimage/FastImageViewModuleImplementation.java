@@ -1,17 +1,15 @@
 package com.dylanvann.fastimage;
 
 import android.app.Activity;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.DataSource;
-import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.Key;
 import com.bumptech.glide.load.model.GlideUrl;
-import com.bumptech.glide.request.RequestListener;
-import com.bumptech.glide.request.RequestOptions;
-import com.bumptech.glide.request.target.Target;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReadableArray;
@@ -20,157 +18,96 @@ import com.facebook.react.views.imagehelper.ImageSource;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.ReactApplicationContext;
 
-import java.io.File;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 class FastImageViewModuleImplementation {
     ReactApplicationContext reactContext;
     FastImageViewModuleImplementation(ReactApplicationContext reactContext){
 
     this.reactContext = reactContext;
+    FastImageMemoryPolicy.setReactContext(reactContext);
     }
 
     public static final String REACT_CLASS = "FastImageViewModule";
 
+    // Parses preload and cache query sources off the UI thread.
+    private static final ExecutorService SOURCE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "FastImageSources"));
+
     private Activity getCurrentActivity(){
         return reactContext.getCurrentActivity();
     }
 
     public void preload(final ReadableArray sources) {
-        final Activity activity = getCurrentActivity();
-        if (activity == null) return;
-        activity.runOnUiThread(new Runnable() {
+        // Glide requests can be started from any thread, nothing here needs the UI thread.
+        SOURCE_EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
+                final RequestManager requestManager = Glide.with(reactContext.getApplicationContext());
                 for (int i = 0; i < sources.size(); i++) {
-                    final ReadableMap source = sources.getMap(i);
-                    final FastImageSource imageSource = FastImageViewConverter.getImageSource(activity, source);
-                    if (source == null || !source.hasKey("uri") || source.getString("uri").isEmpty()) {
-                            System.out.println("Source is null or URI is empty");
-                            continue;
-                          }
-                    Glide
-                            .with(activity.getApplicationContext())
-                            // This will make this work for remote and local images. e.g.
-                            //    - file:///
-                            //    - content://
-                            //    - res:/
-                            //    - android.resource://
-                            //    - data:image/png;base64
-                            .load(
-                                    imageSource.isBase64Resource() ? imageSource.getSource() :
-                                    imageSource.isResource() ? imageSource.getUri() : imageSource.getGlideUrl()
-                            )
-                            .apply(FastImageViewConverter.getOptions(activity, imageSource, source, null))
-                            .preload();
+                    try {
+                        final FastImagePreloadRequest request = FastImagePreloadRequest.create(reactContext, requestManager, sources.getMap(i));
+                        if (request != null) {
+                            request.start(null);
+                        }
+                    } catch (Exception e) {
+                        Log.w(REACT_CLASS, "Skipping preload source " + i, e);
+                    }
                 }
             }
         });
     }
 
-    public void preloadAwait(final ReadableArray sources, final Promise promise) {
-       // on resolve,
-       // returns PreloadAwaitResult
-       // export type PreloadAwaitResult = { finished: number; skipped: number };
-        final Activity activity = getCurrentActivity();
-        if (activity == null) {
-            promise.resolve(Arguments.createMap());
-            return;
-        }
+    public void preloadAwait(final ReadableArray sources, @Nullable final ReadableMap options, final Promise promise) {
+        // on resolve,
+        // returns PreloadAwaitResult, see FastImagePreloader.
+        new FastImagePreloader(reactContext, sources, options, promise).start(SOURCE_EXECUTOR);
+    }
 
-        activity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                int finished = 0;
-                int skipped = 0;
-                for (int i = 0; i < sources.size(); i++) {
-                    final ReadableMap source = sources.getMap(i);
-                    final FastImageSource imageSource = FastImageViewConverter.getImageSource(activity, source);
-                    if (source == null || !source.hasKey("uri") || source.getString("uri").isEmpty()) {
-                        skipped++;
-                        continue;
-                    }
-                    Glide
-                            .with(activity.getApplicationContext())
-                            .load(
-                                    imageSource.isBase64Resource() ? imageSource.getSource() :
-                                    imageSource.isResource() ? imageSource.getUri() : imageSource.getGlideUrl()
-                            )
-                            .apply(FastImageViewConverter.getOptions(activity, imageSource, source, null))
-                            .preload();
-                    finished++;
-                }
-                WritableMap result = Arguments.createMap();
-                result.putInt("finished", finished);
-                result.putInt("skipped", skipped);
-                promise.resolve(result);
-            }
-        });
+    public void cancelPreload(double id) {
+        FastImagePreloader.cancel((int) id);
     }
 
-    public void queryCache(final ReadableArray urls, final Promise promise) {
+    public void queryCache(final ReadableArray sources, final Promise promise) {
         // on resolve,
         // returns QueryCacheResult
-        // Record<String, "cached">;
-
-        final Activity activity = getCurrentActivity();
-        final WritableMap result = Arguments.createMap();
-        if (activity == null) {
-            promise.resolve(result);
-            return;
-        }
-
-        int toCheck = (int) IntStream.range(0, urls.size()).mapToObj(urls::getString).filter(url -> url != null && !url.isEmpty()).count();
-        if (toCheck == 0) {
-            promise.resolve(result);
-            return;
-        }
-
-        final AtomicInteger done = new AtomicInteger(0);
-        final AtomicBoolean resolved = new AtomicBoolean(false);
-
-        final RequestOptions cacheOnly = new RequestOptions().onlyRetrieveFromCache(true);
-
-        activity.runOnUiThread(new Runnable() {
+        // Record<String, "memory" | "disk">;
+        SOURCE_EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
-                for (int i = 0; i < urls.size(); i++) {
-                    final String url = urls.getString(i);
-                    if (url == null || url.isEmpty()) {
-                        if (done.incrementAndGet() == toCheck && resolved.compareAndSet(false, true)) {
-                            promise.resolve(result);
-                        }
+                final WritableMap result = Arguments.createMap();
+                final FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+                for (int i = 0; i < sources.size(); i++) {
+                    final ReadableMap source = sources.getMap(i);
+                    if (source == null || !source.hasKey("uri") || source.isNull("uri") || source.getString("uri").isEmpty()) {
                         continue;
                     }
-
-                    final GlideUrl glideUrl = new GlideUrl(url);
-
-                    Glide.with(activity.getApplicationContext())
-                            .downloadOnly()
-                            .load(glideUrl)
-                            .apply(cacheOnly)
-                            .addListener(new RequestListener<>() {
-                                @Override
-                                public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<File> target, boolean isFirstResource) {
-                                    if (done.incrementAndGet() == toCheck && resolved.compareAndSet(false, true)) {
-                                        promise.resolve(result);
-                                    }
-                                    return false;
-                                }
-
-                                @Override
-                                public boolean onResourceReady(@NonNull File resource, @NonNull Object model, Target<File> target, @NonNull DataSource dataSource, boolean isFirstResource) {
-                                    result.putString(url, "cached");
-                                    if (done.incrementAndGet() == toCheck && resolved.compareAndSet(false, true)) {
-                                        promise.resolve(result);
-                                    }
-                                    return false;
-                                }
-                            })
-                            .preload();
+                    final String uri = source.getString("uri");
+                    try {
+                        final FastImageSource imageSource = FastImageViewConverter.getImageSource(reactContext, source);
+                        // Same model and keys as the view would load with.
+                        final Object model = imageSource.getSourceForLoad();
+                        // Read only, unlike getOptions this doesn't record max ages or expire anything.
+                        final Key signature = FastImageViewConverter.getCacheSignature(reactContext, imageSource, source);
+                        if (FastImageDiskCache.forSignature(reactContext, signature).isExpired(String.valueOf(model))) {
+                            // Fetched again on the next load.
+                            continue;
+                        }
+                        if (memoryCache != null && memoryCache.containsModel(String.valueOf(model))) {
+                            result.putString(uri, "memory");
+                        } else if (model instanceof GlideUrl && FastImageCacheKeys.getDataCacheFile(
+                                reactContext,
+                                (GlideUrl) model,
+                                signature
+                        ).exists()) {
+                            result.putString(uri, "disk");
+                        }
+                    } catch (Exception e) {
+                        // Unparsable sources are not cached.
+                    }
                 }
+                promise.resolve(result);
             }
         });
     }
@@ -199,6 +136,83 @@ class FastImageViewModuleImplementation {
         }
 
         Glide.get(activity.getApplicationContext()).clearDiskCache();
+        FastImageRevalidator.clear(activity);
         promise.resolve(null);
     }
+
+    public void clearDiskCachePartition(final String partition, final Promise promise) {
+        final FastImageDiskCache diskCache = FastImageDiskCache.getPartition(reactContext, partition);
+        if (diskCache == null) {
+            promise.reject("E_UNKNOWN_PARTITION", "Unknown disk cache partition: " + partition);
+            return;
+        }
+        SOURCE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                diskCache.clear();
+                promise.resolve(null);
+            }
+        });
+    }
+
+    public void evict(final ReadableArray sources, final Promise promise) {
+        // on resolve,
+        // returns EvictResult
+        // { bytesFreed: number, memoryBytesFreed: number, diskBytesFreed: number, httpCacheBytesFreed: number }
+        SOURCE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final FastImageMemoryCache memoryCache = FastImageMemoryCache.get();
+                // A url may have been cached in other partitions before.
+                final List<FastImageDiskCache> diskCaches = FastImageDiskCache.getAll(reactContext);
+                long memoryBytes = 0;
+                long diskBytes = 0;
+                long httpBytes = 0;
+                for (int i = 0; i < sources.size(); i++) {
+                    final ReadableMap source = sources.getMap(i);
+                    if (source == null || !source.hasKey("uri") || source.isNull("uri") || source.getString("uri").isEmpty()) {
+                        continue;
+                    }
+                    final Object model;
+                    try {
+                        model = FastImageViewConverter.getImageSource(reactContext, source).getSourceForLoad();
+                    } catch (Exception e) {
+                        continue;
+                    }
+                    final String modelKey = String.valueOf(model);
+                    if (memoryCache != null) {
+                        memoryBytes += memoryCache.evictModel(modelKey);
+                    }
+                    for (FastImageDiskCache diskCache : diskCaches) {
+                        diskBytes += diskCache.evict(modelKey);
+                    }
+                    if (model instanceof GlideUrl) {
+                        final String url = ((GlideUrl) model).toStringUrl();
+                        FastImageHttpValidators.forget(url);
+                        FastImageRevalidator.forget(reactContext, (GlideUrl) model);
+                        httpBytes += FastImageNetworkConfig.evictFromHttpCache(url);
+                    }
+                }
+                final WritableMap result = Arguments.createMap();
+                result.putDouble("bytesFreed", memoryBytes + diskBytes + httpBytes);
+                result.putDouble("memoryBytesFreed", memoryBytes);
+                result.putDouble("diskBytesFreed", diskBytes);
+                result.putDouble("httpCacheBytesFreed", httpBytes);
+                promise.resolve(result);
+            }
+        });
+    }
+
+    public void getCacheStats(final Promise promise) {
+        SOURCE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(FastImageCacheStats.snapshot(reactContext));
+            }
+        });
+    }
+
+    public void configureNetwork(final ReadableMap config) {
+        FastImageNetworkConfig.apply(config);
+    }
 }
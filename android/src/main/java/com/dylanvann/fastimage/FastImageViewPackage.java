@@ -49,6 +49,8 @@ public class FastImageViewPackage extends TurboReactPackage {
 
     @Override
     public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
+        // Before JS renders the first screen.
+        FastImageHotSet.warmUp(reactContext);
         return Collections.<ViewManager>singletonList(new FastImageViewManager());
     }
 
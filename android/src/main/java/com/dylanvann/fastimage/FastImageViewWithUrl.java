@@ -3,69 +3,298 @@ package com.dylanvann.fastimage;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 import androidx.appcompat.widget.AppCompatImageView;
 
 import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.request.Request;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.bumptech.glide.load.resource.gif.GifDrawable;
 import com.facebook.react.bridge.ReadableMap;
 import com.dylanvann.fastimage.events.FastImageErrorEvent;
 import com.dylanvann.fastimage.events.FastImageLoadStartEvent;
+import com.dylanvann.fastimage.events.FastImageProgressEvent;
+import com.facebook.react.uimanager.PixelUtil;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.UIManagerHelper;
 import com.facebook.react.uimanager.events.EventDispatcher;
+import com.facebook.react.views.imagehelper.ResourceDrawableIdHelper;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import android.os.Build;
 import android.util.Log;
 
 class FastImageViewWithUrl extends AppCompatImageView {
     private static final String TAG = "FastImageViewWithUrl";
-    private boolean mNeedsReload = false;
+    // New views load on their first update.
+    private boolean mNeedsReload = true;
     private ReadableMap mSource = null;
     private Drawable mDefaultSource = null;
+    @Nullable
+    private String mDefaultSourceUri = null;
+    // Set when an update passed load-affecting props without changing any of them.
+    private boolean mUnchangedLoadProps = false;
     private int mBlurRadius = 0;
     private int mBlurRadiusPrevious = 0;
     public GlideUrl glideUrl;
     private String mTransition = "none"; // "none" | "fade"
+    private int mProgressInterval = 0;
+    private float mProgressGranularity = DEFAULT_PROGRESS_GRANULARITY;
+    private long mLastProgressTime = 0;
+    private long mLastProgressStep = -1;
+    private boolean mLoadEventsEnabled = true;
+    private boolean mProgressEventsEnabled = true;
+    // In pixels, 0 for no limit.
+    private int mMaxDecodeWidth = 0;
+    private int mMaxDecodeHeight = 0;
+    // Size in pixels the view will be laid out at, known from its style before layout.
+    private int mLayoutWidth = 0;
+    private int mLayoutHeight = 0;
+    // Kept from the last update so the view can reload itself, e.g. after a revalidation.
+    @Nullable
+    private FastImageViewManager mManager = null;
+    @Nullable
+    private RequestManager mRequestManager = null;
+    @Nullable
+    private Map<String, List<FastImageViewWithUrl>> mViewsForUrlsMap = null;
+
+    static final float DEFAULT_PROGRESS_GRANULARITY = 0.5f;
+    // Finest granularity a mounted view asked for, progress is first throttled by it on OkHttp
+    // threads.
+    private static volatile float minProgressGranularity = DEFAULT_PROGRESS_GRANULARITY;
+    // Granularities finer than the default by view, until the view is dropped. Guarded by itself.
+    private static final Map<FastImageViewWithUrl, Float> FINE_PROGRESS_GRANULARITIES = new WeakHashMap<>();
+    private static final AtomicLong AVOIDED_RELOADS = new AtomicLong();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // Offscreen: detached from the window (e.g. clipped by a list) or hidden with an ancestor.
+    private boolean mOffscreen = false;
+    // Set once the view stayed offscreen for the grace period, loads wait until it returns.
+    private boolean mPausedOffscreen = false;
+    private boolean mLoading = false;
+    private final Runnable mPauseOffscreenLoad = new Runnable() {
+        @Override
+        public void run() {
+            pauseOffscreenLoad();
+        }
+    };
 
     public FastImageViewWithUrl(Context context) {
         super(context);
     }
 
+    /**
+     * @return the number of prop updates that left every load-affecting prop unchanged and so
+     * kept the current request instead of reloading.
+     */
+    static long getAvoidedReloadCount() {
+        return AVOIDED_RELOADS.get();
+    }
+
+    // Props that affect the load only reload the image when their value changed, re-rendering a
+    // parent with equal props keeps the current request.
+    private void onLoadPropSet(boolean changed) {
+        if (changed) {
+            mNeedsReload = true;
+        } else {
+            mUnchangedLoadProps = true;
+        }
+    }
+
     public void setSource(@Nullable ReadableMap source) {
-        mNeedsReload = true;
+        onLoadPropSet(!isSameSource(mSource, source));
         mSource = source;
     }
 
-    public void setDefaultSource(@Nullable Drawable source) {
-        mNeedsReload = true;
-        mDefaultSource = source;
+    // Structural comparison, the bridge hands over a new map on every update.
+    private static boolean isSameSource(@Nullable ReadableMap previous, @Nullable ReadableMap next) {
+        if (previous == null || next == null) {
+            return previous == next;
+        }
+        return previous == next || previous.toHashMap().equals(next.toHashMap());
+    }
+
+    public void setDefaultSource(@Nullable String source) {
+        boolean changed = !Objects.equals(mDefaultSourceUri, source);
+        onLoadPropSet(changed);
+        if (changed) {
+            mDefaultSourceUri = source;
+            mDefaultSource = ResourceDrawableIdHelper.getInstance().getResourceDrawable(getContext(), source);
+        }
     }
 
     public void setBlurRadius(@Nullable Integer blurRadius) {
-        mNeedsReload = true;
-        mBlurRadiusPrevious = mBlurRadius;
-        mBlurRadius = blurRadius == null ? 0 : blurRadius;
+        int radius = blurRadius == null ? 0 : blurRadius;
+        onLoadPropSet(radius != mBlurRadius);
+        if (radius != mBlurRadius) {
+            mBlurRadiusPrevious = mBlurRadius;
+            mBlurRadius = radius;
+        }
+    }
+
+    /**
+     * The scale type selects the transformation and sampling of the decoded image.
+     */
+    public void setResizeMode(@NonNull ScaleType scaleType) {
+        onLoadPropSet(scaleType != getScaleType());
+        setScaleType(scaleType);
     }
 
     public void setTransition(@Nullable String transition) {
-        mNeedsReload = true;
-        if (transition == null) {
-            mTransition = "none";
-        } else {
-            mTransition = transition;
+        String value = transition == null ? "none" : transition;
+        onLoadPropSet(!value.equals(mTransition));
+        mTransition = value;
+    }
+
+    public void setMaxDecodeWidth(int maxDecodeWidth) {
+        int width = Math.max(0, maxDecodeWidth);
+        onLoadPropSet(width != mMaxDecodeWidth);
+        mMaxDecodeWidth = width;
+    }
+
+    public void setMaxDecodeHeight(int maxDecodeHeight) {
+        int height = Math.max(0, maxDecodeHeight);
+        onLoadPropSet(height != mMaxDecodeHeight);
+        mMaxDecodeHeight = height;
+    }
+
+    /**
+     * @param layoutWidth in dp, 0 when not known before layout.
+     */
+    public void setLayoutWidth(float layoutWidth) {
+        int width = layoutWidth > 0 ? Math.round(PixelUtil.toPixelFromDIP(layoutWidth)) : 0;
+        onLoadPropSet(width != mLayoutWidth);
+        mLayoutWidth = width;
+    }
+
+    /**
+     * @param layoutHeight in dp, 0 when not known before layout.
+     */
+    public void setLayoutHeight(float layoutHeight) {
+        int height = layoutHeight > 0 ? Math.round(PixelUtil.toPixelFromDIP(layoutHeight)) : 0;
+        onLoadPropSet(height != mLayoutHeight);
+        mLayoutHeight = height;
+    }
+
+    /**
+     * @return the width the image is requested at, 0 when not known yet.
+     */
+    int getRequestWidth() {
+        if (mLayoutWidth > 0 && mLayoutHeight > 0) {
+            return Math.max(1, Math.round(mLayoutWidth * getDecodeScale(mLayoutWidth, mLayoutHeight)));
+        }
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        return width > 0 && height > 0 ? Math.max(1, Math.round(width * getDecodeScale(width, height))) : 0;
+    }
+
+    /**
+     * @return the height the image is requested at, 0 when not known yet.
+     */
+    int getRequestHeight() {
+        if (mLayoutWidth > 0 && mLayoutHeight > 0) {
+            return Math.max(1, Math.round(mLayoutHeight * getDecodeScale(mLayoutWidth, mLayoutHeight)));
+        }
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        return width > 0 && height > 0 ? Math.max(1, Math.round(height * getDecodeScale(width, height))) : 0;
+    }
+
+    private float getDecodeScale(int width, int height) {
+        return FastImageDecodeSizeTarget.getScale(width, height, mMaxDecodeWidth, mMaxDecodeHeight);
+    }
+
+    public void setProgressInterval(int progressInterval) {
+        mProgressInterval = Math.max(0, progressInterval);
+    }
+
+    public void setProgressGranularity(float progressGranularity) {
+        mProgressGranularity = Math.max(0f, progressGranularity);
+        synchronized (FINE_PROGRESS_GRANULARITIES) {
+            if (mProgressGranularity < DEFAULT_PROGRESS_GRANULARITY) {
+                FINE_PROGRESS_GRANULARITIES.put(this, mProgressGranularity);
+            } else {
+                FINE_PROGRESS_GRANULARITIES.remove(this);
+            }
+            updateMinProgressGranularity();
+        }
+    }
+
+    private static void updateMinProgressGranularity() {
+        float min = DEFAULT_PROGRESS_GRANULARITY;
+        for (float granularity : FINE_PROGRESS_GRANULARITIES.values()) {
+            min = Math.min(min, granularity);
+        }
+        minProgressGranularity = min;
+    }
+
+    /**
+     * @return the granularity in percent no mounted view needs finer progress than.
+     */
+    static float getMinProgressGranularity() {
+        return minProgressGranularity;
+    }
+
+    public void setLoadEventsEnabled(boolean loadEventsEnabled) {
+        mLoadEventsEnabled = loadEventsEnabled;
+    }
+
+    public void setProgressEventsEnabled(boolean progressEventsEnabled) {
+        mProgressEventsEnabled = progressEventsEnabled;
+    }
+
+    /**
+     * Called once per frame by {@link FastImageProgressAggregator} with the latest progress of the
+     * url this view is loading. 0% and 100% are always dispatched, everything in between is
+     * throttled by the view's time and percentage settings.
+     */
+    void dispatchProgress(long bytesRead, long expectedLength, long frameTimeMillis) {
+        if (!mProgressEventsEnabled) {
+            return;
+        }
+        boolean isBoundary = bytesRead == 0 || (expectedLength > 0 && expectedLength <= bytesRead);
+        if (!isBoundary) {
+            if (mProgressInterval > 0 && frameTimeMillis - mLastProgressTime < mProgressInterval) {
+                return;
+            }
+            if (mProgressGranularity > 0 && expectedLength > 0) {
+                long step = (long) (100f * bytesRead / expectedLength / mProgressGranularity);
+                if (step == mLastProgressStep) {
+                    return;
+                }
+                mLastProgressStep = step;
+            }
+        }
+        mLastProgressTime = frameTimeMillis;
+
+        ThemedReactContext context = (ThemedReactContext) getContext();
+        EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, getId());
+        if (dispatcher != null) {
+            int surfaceId = UIManagerHelper.getSurfaceId(context);
+            dispatcher.dispatchEvent(new FastImageProgressEvent(
+                    surfaceId,
+                    getId(),
+                    (int) bytesRead,
+                    (int) expectedLength));
         }
     }
 
@@ -78,8 +307,23 @@ class FastImageViewWithUrl extends AppCompatImageView {
             @NonNull FastImageViewManager manager,
             @Nullable RequestManager requestManager,
             @NonNull Map<String, List<FastImageViewWithUrl>> viewsForUrlsMap) {
-        if (!mNeedsReload)
+        mManager = manager;
+        mRequestManager = requestManager;
+        mViewsForUrlsMap = viewsForUrlsMap;
+
+        if (!mNeedsReload) {
+            if (mUnchangedLoadProps) {
+                AVOIDED_RELOADS.incrementAndGet();
+            }
+            mUnchangedLoadProps = false;
+            return;
+        }
+        mUnchangedLoadProps = false;
+        if (mPausedOffscreen) {
+            // Deferred until the view is back on screen.
             return;
+        }
+        mNeedsReload = false;
 
         if ((mSource == null ||
                 !mSource.hasKey("uri") ||
@@ -87,7 +331,7 @@ class FastImageViewWithUrl extends AppCompatImageView {
                 mDefaultSource == null) {
 
             // Cancel existing requests.
-            clearView(requestManager);
+            cancelLoad(requestManager);
 
             if (glideUrl != null) {
                 FastImageOkHttpProgressGlideModule.forget(glideUrl.toStringUrl());
@@ -96,12 +340,14 @@ class FastImageViewWithUrl extends AppCompatImageView {
             // Clear the image.
             setImageDrawable(null);
 
-            ThemedReactContext context = (ThemedReactContext) getContext();
-            EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, getId());
-            int surfaceId = UIManagerHelper.getSurfaceId(this);
-            FastImageErrorEvent event = new FastImageErrorEvent(surfaceId, getId(), mSource);
-            if (dispatcher != null) {
-                dispatcher.dispatchEvent(event);
+            if (mLoadEventsEnabled) {
+                ThemedReactContext context = (ThemedReactContext) getContext();
+                EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, getId());
+                int surfaceId = UIManagerHelper.getSurfaceId(this);
+                FastImageErrorEvent event = new FastImageErrorEvent(surfaceId, getId(), mSource);
+                if (dispatcher != null) {
+                    dispatcher.dispatchEvent(event);
+                }
             }
             return;
         }
@@ -110,16 +356,18 @@ class FastImageViewWithUrl extends AppCompatImageView {
         final FastImageSource imageSource = FastImageViewConverter.getImageSource(getContext(), mSource);
 
         if (imageSource != null && imageSource.getUri().toString().length() == 0) {
-            ThemedReactContext context = (ThemedReactContext) getContext();
-            EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, getId());
-            int surfaceId = UIManagerHelper.getSurfaceId(this);
-            FastImageErrorEvent event = new FastImageErrorEvent(surfaceId, getId(), mSource);
-
-            if (dispatcher != null) {
-                dispatcher.dispatchEvent(event);
+            if (mLoadEventsEnabled) {
+                ThemedReactContext context = (ThemedReactContext) getContext();
+                EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, getId());
+                int surfaceId = UIManagerHelper.getSurfaceId(this);
+                FastImageErrorEvent event = new FastImageErrorEvent(surfaceId, getId(), mSource);
+
+                if (dispatcher != null) {
+                    dispatcher.dispatchEvent(event);
+                }
             }
             // Cancel existing requests.
-            clearView(requestManager);
+            cancelLoad(requestManager);
 
             if (glideUrl != null) {
                 FastImageOkHttpProgressGlideModule.forget(glideUrl.toStringUrl());
@@ -134,11 +382,14 @@ class FastImageViewWithUrl extends AppCompatImageView {
 
         // Cancel existing request.
         this.glideUrl = glideUrl;
-        clearView(requestManager);
+        cancelLoad(requestManager);
+        mLastProgressTime = 0;
+        mLastProgressStep = -1;
 
         String key = glideUrl == null ? null : glideUrl.toStringUrl();
 
-        if (glideUrl != null) {
+        // Progress is only tracked when JS listens for it.
+        if (glideUrl != null && mProgressEventsEnabled) {
             FastImageOkHttpProgressGlideModule.expect(key, manager);
             List<FastImageViewWithUrl> viewsForKey = viewsForUrlsMap.get(key);
             if (viewsForKey != null && !viewsForKey.contains(this)) {
@@ -150,7 +401,7 @@ class FastImageViewWithUrl extends AppCompatImageView {
         }
 
         ThemedReactContext context = (ThemedReactContext) getContext();
-        if (imageSource != null) {
+        if (imageSource != null && mLoadEventsEnabled) {
             // This is an orphan even without a load/loadend when only loading a placeholder
             // This is an orphan event without a load/loadend when only loading a placeholder
             EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, getId());
@@ -177,15 +428,40 @@ class FastImageViewWithUrl extends AppCompatImageView {
                                 .placeholder(mDefaultSource) // show until loaded
                                 .fallback(mDefaultSource)); // null will not be treated as error
 
-                if (key != null) {
-                    builder.listener(new FastImageRequestListener(key));
+                if (key != null && (mLoadEventsEnabled || mProgressEventsEnabled)) {
+                    builder.listener(new FastImageRequestListener(key, mLoadEventsEnabled));
+                }
+
+                if (glideUrl != null && FastImageViewConverter.getCacheControl(mSource) == FastImageCacheControl.STALE_WHILE_REVALIDATE) {
+                    builder.addListener(new FastImageRevalidator.RevalidateListener(this, glideUrl, FastImageViewConverter.getCachePartition(mSource)));
                 }
 
+                if (FastImageHotSet.isEnabled()) {
+                    builder.addListener(new FastImageHotSet.RecordListener(this, mSource));
+                }
+
+                builder.addListener(new LoadStateListener(this));
+
                 if ("fade".equals(mTransition)) {
                     builder = builder.transition(DrawableTransitionOptions.withCrossFade());
                 }
 
-                builder.into(this);
+                mLoading = true;
+
+                if (mLayoutWidth > 0 && mLayoutHeight > 0) {
+                    // The size is known from the style, the request starts now instead of after
+                    // the first layout pass.
+                    builder.override(getRequestWidth(), getRequestHeight());
+                    builder.into(this);
+                } else if (mMaxDecodeWidth > 0 || mMaxDecodeHeight > 0) {
+                    // Same transformation into(ImageView) would add, for the capped size.
+                    @SuppressWarnings("unchecked")
+                    RequestBuilder<Drawable> drawableBuilder = (RequestBuilder<Drawable>) builder;
+                    FastImageViewConverter.applyScaleType(drawableBuilder, getScaleType())
+                            .into(new FastImageDecodeSizeTarget(this, mMaxDecodeWidth, mMaxDecodeHeight));
+                } else {
+                    builder.into(this);
+                }
             } catch (Exception e) {
                 Log.e(TAG, String.format("Error detecting image type for URI: %s. Exception: %s",
                 imageSource != null ? imageSource.getUri().toString() : "null", e.getMessage()), e);
@@ -193,9 +469,113 @@ class FastImageViewWithUrl extends AppCompatImageView {
         }
     }
 
+    /**
+     * Loads the current source again, the request options are derived anew.
+     */
+    void refresh() {
+        if (mManager == null || mViewsForUrlsMap == null) {
+            return;
+        }
+        mNeedsReload = true;
+        onAfterUpdate(mManager, mRequestManager, mViewsForUrlsMap);
+    }
+
     public void clearView(@Nullable RequestManager requestManager) {
+        cancelLoad(requestManager);
+        // A cleared view loads again on its next update, even with equal props.
+        mNeedsReload = true;
+        synchronized (FINE_PROGRESS_GRANULARITIES) {
+            if (FINE_PROGRESS_GRANULARITIES.remove(this) != null) {
+                updateMinProgressGranularity();
+            }
+        }
+    }
+
+    // Unlike clearView, the view is not marked for reload: onAfterUpdate cancels to load its props.
+    private void cancelLoad(@Nullable RequestManager requestManager) {
         if (requestManager != null && getTag() != null && getTag() instanceof Request) {
             requestManager.clear(this);
         }
+        MAIN_HANDLER.removeCallbacks(mPauseOffscreenLoad);
+        mLoading = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        setOffscreen(!isShown());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        setOffscreen(true);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        setOffscreen(!isVisible || !isAttachedToWindow());
+    }
+
+    /**
+     * Loads of views that stay offscreen for longer than the grace period are cancelled and
+     * resumed, usually from the cache, once the view is back. Scrolling back within the grace
+     * period keeps the running load.
+     */
+    private void setOffscreen(boolean offscreen) {
+        if (offscreen == mOffscreen) {
+            return;
+        }
+        mOffscreen = offscreen;
+        MAIN_HANDLER.removeCallbacks(mPauseOffscreenLoad);
+        if (offscreen) {
+            long gracePeriodMs = FastImageGlideConfig.getOffscreenGracePeriodMs();
+            if (gracePeriodMs >= 0) {
+                MAIN_HANDLER.postDelayed(mPauseOffscreenLoad, gracePeriodMs);
+            }
+        } else if (mPausedOffscreen) {
+            mPausedOffscreen = false;
+            if (mNeedsReload && mManager != null && mViewsForUrlsMap != null) {
+                onAfterUpdate(mManager, mRequestManager, mViewsForUrlsMap);
+            }
+        }
+    }
+
+    private void pauseOffscreenLoad() {
+        if (!mOffscreen) {
+            return;
+        }
+        mPausedOffscreen = true;
+        if (mLoading && mRequestManager != null) {
+            mRequestManager.clear(this);
+            mLoading = false;
+            mNeedsReload = true;
+        }
+    }
+
+    /**
+     * Tracks whether the view's request is still running, finished requests are left alone when
+     * the view goes offscreen.
+     */
+    private static class LoadStateListener<T extends Drawable> implements RequestListener<T> {
+        private final FastImageViewWithUrl view;
+
+        LoadStateListener(FastImageViewWithUrl view) {
+            this.view = view;
+        }
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model, @NonNull Target<T> target, boolean isFirstResource) {
+            view.mLoading = false;
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(@NonNull T resource, @NonNull Object model, Target<T> target, @NonNull DataSource dataSource, boolean isFirstResource) {
+            view.mLoading = false;
+            return false;
+        }
     }
 }
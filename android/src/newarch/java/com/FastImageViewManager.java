@@ -24,7 +24,6 @@ import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.UIManagerHelper;
 import com.facebook.react.uimanager.annotations.ReactProp;
 import com.facebook.react.uimanager.events.EventDispatcher;
-import com.facebook.react.views.imagehelper.ResourceDrawableIdHelper;
 import com.facebook.react.uimanager.ViewManagerDelegate;
 import com.facebook.react.viewmanagers.FastImageViewManagerDelegate;
 import com.facebook.react.viewmanagers.FastImageViewManagerInterface;
@@ -42,6 +41,7 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
     static final String REACT_ON_LOAD_START_EVENT = "onFastImageLoadStart";
     static final String REACT_ON_PROGRESS_EVENT = "onFastImageProgress";
     private static final Map<String, List<FastImageViewWithUrl>> VIEWS_FOR_URLS = new WeakHashMap<>();
+    private static final FastImageProgressAggregator PROGRESS_AGGREGATOR = new FastImageProgressAggregator(VIEWS_FOR_URLS);
 
     @Nullable
     private RequestManager requestManager = null;
@@ -80,9 +80,7 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
     @Override
     @ReactProp(name = "defaultSource")
     public void setDefaultSource(FastImageViewWithUrl view, @Nullable String source) {
-        view.setDefaultSource(
-                ResourceDrawableIdHelper.getInstance()
-                        .getResourceDrawable(view.getContext(), source));
+        view.setDefaultSource(source);
     }
     @Override
     @ReactProp(name = "tintColor", customType = "Color")
@@ -97,7 +95,7 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
     @ReactProp(name = "resizeMode")
     public void setResizeMode(FastImageViewWithUrl view, String resizeMode) {
         final FastImageViewWithUrl.ScaleType scaleType = FastImageViewConverter.getScaleType(resizeMode);
-        view.setScaleType(scaleType);
+        view.setResizeMode(scaleType);
     }
     @Override
     @ReactProp(name = "blurRadius")
@@ -111,6 +109,54 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
         view.setTransition(transition);
     }
 
+    @Override
+    @ReactProp(name = "maxDecodeWidth")
+    public void setMaxDecodeWidth(FastImageViewWithUrl view, int maxDecodeWidth) {
+        view.setMaxDecodeWidth(maxDecodeWidth);
+    }
+
+    @Override
+    @ReactProp(name = "maxDecodeHeight")
+    public void setMaxDecodeHeight(FastImageViewWithUrl view, int maxDecodeHeight) {
+        view.setMaxDecodeHeight(maxDecodeHeight);
+    }
+
+    @Override
+    @ReactProp(name = "layoutWidth")
+    public void setLayoutWidth(FastImageViewWithUrl view, float layoutWidth) {
+        view.setLayoutWidth(layoutWidth);
+    }
+
+    @Override
+    @ReactProp(name = "layoutHeight")
+    public void setLayoutHeight(FastImageViewWithUrl view, float layoutHeight) {
+        view.setLayoutHeight(layoutHeight);
+    }
+
+    @Override
+    @ReactProp(name = "progressInterval")
+    public void setProgressInterval(FastImageViewWithUrl view, int progressInterval) {
+        view.setProgressInterval(progressInterval);
+    }
+
+    @Override
+    @ReactProp(name = "progressGranularity", defaultFloat = FastImageViewWithUrl.DEFAULT_PROGRESS_GRANULARITY)
+    public void setProgressGranularity(FastImageViewWithUrl view, float progressGranularity) {
+        view.setProgressGranularity(progressGranularity);
+    }
+
+    @Override
+    @ReactProp(name = "loadEventsEnabled", defaultBoolean = true)
+    public void setLoadEventsEnabled(FastImageViewWithUrl view, boolean loadEventsEnabled) {
+        view.setLoadEventsEnabled(loadEventsEnabled);
+    }
+
+    @Override
+    @ReactProp(name = "progressEventsEnabled", defaultBoolean = true)
+    public void setProgressEventsEnabled(FastImageViewWithUrl view, boolean progressEventsEnabled) {
+        view.setProgressEventsEnabled(progressEventsEnabled);
+    }
+
     @Override
     public void onDropViewInstance(@NonNull FastImageViewWithUrl view) {
         // This will cancel existing requests.
@@ -142,28 +188,14 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
 
     @Override
     public void onProgress(String key, long bytesRead, long expectedLength) {
-        List<FastImageViewWithUrl> viewsForKey = VIEWS_FOR_URLS.get(key);
-        if (viewsForKey != null) {
-            for (FastImageViewWithUrl view : viewsForKey) {
-                ThemedReactContext context = (ThemedReactContext) view.getContext();
-                EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, view.getId());
-                int surfaceId = UIManagerHelper.getSurfaceId(context);
-                FastImageProgressEvent event = new FastImageProgressEvent(
-                        surfaceId,
-                        view.getId(),
-                        (int) bytesRead,
-                        (int) expectedLength);
-
-                if (dispatcher != null) {
-                    dispatcher.dispatchEvent(event);
-                }
-            }
-        }
+        // Called on OkHttp threads; the aggregator hands the latest value to the views once per frame.
+        PROGRESS_AGGREGATOR.update(key, bytesRead, expectedLength);
     }
 
     @Override
     public float getGranularityPercentage() {
-        return 0.5f;
+        // Coarse threshold on OkHttp threads, views throttle further when the aggregator flushes.
+        return FastImageViewWithUrl.getMinProgressGranularity();
     }
 
     private static boolean isValidContextForGlide(final Context context) {
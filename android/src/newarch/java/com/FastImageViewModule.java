@@ -35,13 +35,18 @@ class FastImageViewModule extends NativeFastImageViewModuleSpec {
     }
 
     @Override
-    public void preloadAwait(final ReadableArray sources, final Promise promise) {
-        impl.preloadAwait(sources, promise);
+    public void preloadAwait(final ReadableArray sources, final ReadableMap options, final Promise promise) {
+        impl.preloadAwait(sources, options, promise);
     }
 
     @Override
-    public void queryCache(final ReadableArray urls, final Promise promise) {
-        impl.queryCache(urls, promise);
+    public void cancelPreload(double id) {
+        impl.cancelPreload(id);
+    }
+
+    @Override
+    public void queryCache(final ReadableArray sources, final Promise promise) {
+        impl.queryCache(sources, promise);
     }
 
     @Override
@@ -53,4 +58,33 @@ class FastImageViewModule extends NativeFastImageViewModuleSpec {
     public void clearDiskCache(Promise promise) {
         impl.clearDiskCache(promise);
     }
+
+    @Override
+    public void clearDiskCachePartition(String partition, Promise promise) {
+        impl.clearDiskCachePartition(partition, promise);
+    }
+
+    @Override
+    public void evict(ReadableArray sources, Promise promise) {
+        impl.evict(sources, promise);
+    }
+
+    @Override
+    public void getCacheStats(Promise promise) {
+        impl.getCacheStats(promise);
+    }
+
+    // Required by NativeEventEmitter, events are emitted regardless of listeners.
+    @Override
+    public void addListener(String eventName) {
+    }
+
+    @Override
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void configureNetwork(ReadableMap config) {
+        impl.configureNetwork(config);
+    }
 }
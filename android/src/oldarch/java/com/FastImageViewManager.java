@@ -25,7 +25,6 @@ import com.facebook.react.uimanager.UIManagerHelper;
 import com.facebook.react.uimanager.common.ViewUtil;
 import com.facebook.react.uimanager.events.EventDispatcher;
 import com.facebook.react.uimanager.annotations.ReactProp;
-import com.facebook.react.views.imagehelper.ResourceDrawableIdHelper;
 
 import java.util.List;
 import java.util.Map;
@@ -39,6 +38,7 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
     static final String REACT_ON_LOAD_START_EVENT = "onFastImageLoadStart";
     static final String REACT_ON_PROGRESS_EVENT = "onFastImageProgress";
     private static final Map<String, List<FastImageViewWithUrl>> VIEWS_FOR_URLS = new WeakHashMap<>();
+    private static final FastImageProgressAggregator PROGRESS_AGGREGATOR = new FastImageProgressAggregator(VIEWS_FOR_URLS);
 
     @Nullable
     private RequestManager requestManager = null;
@@ -66,9 +66,7 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
 
     @ReactProp(name = "defaultSource")
     public void setDefaultSource(FastImageViewWithUrl view, @Nullable String source) {
-        view.setDefaultSource(
-                ResourceDrawableIdHelper.getInstance()
-                        .getResourceDrawable(view.getContext(), source));
+        view.setDefaultSource(source);
     }
 
     @ReactProp(name = "tintColor", customType = "Color")
@@ -83,7 +81,7 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
     @ReactProp(name = "resizeMode")
     public void setResizeMode(FastImageViewWithUrl view, String resizeMode) {
         final FastImageViewWithUrl.ScaleType scaleType = FastImageViewConverter.getScaleType(resizeMode);
-        view.setScaleType(scaleType);
+        view.setResizeMode(scaleType);
     }
 
     @ReactProp(name = "blurRadius")
@@ -96,6 +94,46 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
         view.setTransition(transition);
     }
 
+    @ReactProp(name = "maxDecodeWidth")
+    public void setMaxDecodeWidth(FastImageViewWithUrl view, int maxDecodeWidth) {
+        view.setMaxDecodeWidth(maxDecodeWidth);
+    }
+
+    @ReactProp(name = "maxDecodeHeight")
+    public void setMaxDecodeHeight(FastImageViewWithUrl view, int maxDecodeHeight) {
+        view.setMaxDecodeHeight(maxDecodeHeight);
+    }
+
+    @ReactProp(name = "layoutWidth")
+    public void setLayoutWidth(FastImageViewWithUrl view, float layoutWidth) {
+        view.setLayoutWidth(layoutWidth);
+    }
+
+    @ReactProp(name = "layoutHeight")
+    public void setLayoutHeight(FastImageViewWithUrl view, float layoutHeight) {
+        view.setLayoutHeight(layoutHeight);
+    }
+
+    @ReactProp(name = "progressInterval")
+    public void setProgressInterval(FastImageViewWithUrl view, int progressInterval) {
+        view.setProgressInterval(progressInterval);
+    }
+
+    @ReactProp(name = "progressGranularity", defaultFloat = FastImageViewWithUrl.DEFAULT_PROGRESS_GRANULARITY)
+    public void setProgressGranularity(FastImageViewWithUrl view, float progressGranularity) {
+        view.setProgressGranularity(progressGranularity);
+    }
+
+    @ReactProp(name = "loadEventsEnabled", defaultBoolean = true)
+    public void setLoadEventsEnabled(FastImageViewWithUrl view, boolean loadEventsEnabled) {
+        view.setLoadEventsEnabled(loadEventsEnabled);
+    }
+
+    @ReactProp(name = "progressEventsEnabled", defaultBoolean = true)
+    public void setProgressEventsEnabled(FastImageViewWithUrl view, boolean progressEventsEnabled) {
+        view.setProgressEventsEnabled(progressEventsEnabled);
+    }
+
     @Override
     public void onDropViewInstance(@NonNull FastImageViewWithUrl view) {
         // This will cancel existing requests.
@@ -127,28 +165,14 @@ class FastImageViewManager extends SimpleViewManager<FastImageViewWithUrl> imple
 
     @Override
     public void onProgress(String key, long bytesRead, long expectedLength) {
-        List<FastImageViewWithUrl> viewsForKey = VIEWS_FOR_URLS.get(key);
-        if (viewsForKey != null) {
-            for (FastImageViewWithUrl view : viewsForKey) {
-                ThemedReactContext context = (ThemedReactContext) view.getContext();
-                EventDispatcher dispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, view.getId());
-                int surfaceId = UIManagerHelper.getSurfaceId(context);
-                FastImageProgressEvent event = new FastImageProgressEvent(
-                        surfaceId,
-                        view.getId(),
-                        (int) bytesRead,
-                        (int) expectedLength);
-
-                if (dispatcher != null) {
-                    dispatcher.dispatchEvent(event);
-                }
-            }
-        }
+        // Called on OkHttp threads; the aggregator hands the latest value to the views once per frame.
+        PROGRESS_AGGREGATOR.update(key, bytesRead, expectedLength);
     }
 
     @Override
     public float getGranularityPercentage() {
-        return 0.5f;
+        // Coarse threshold on OkHttp threads, views throttle further when the aggregator flushes.
+        return FastImageViewWithUrl.getMinProgressGranularity();
     }
 
     private static boolean isValidContextForGlide(final Context context) {
@@ -35,13 +35,18 @@ class FastImageViewModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void preloadAwait(final ReadableArray sources, final Promise promise) {
-        impl.preloadAwait(sources, promise);
+    public void preloadAwait(final ReadableArray sources, final ReadableMap options, final Promise promise) {
+        impl.preloadAwait(sources, options, promise);
     }
 
     @ReactMethod
-    public void queryCache(final ReadableArray urls, final Promise promise) {
-        impl.queryCache(urls, promise);
+    public void cancelPreload(double id) {
+        impl.cancelPreload(id);
+    }
+
+    @ReactMethod
+    public void queryCache(final ReadableArray sources, final Promise promise) {
+        impl.queryCache(sources, promise);
     }
 
     @ReactMethod
@@ -53,4 +58,33 @@ class FastImageViewModule extends ReactContextBaseJavaModule {
     public void clearDiskCache(Promise promise) {
         impl.clearDiskCache(promise);
     }
+
+    @ReactMethod
+    public void clearDiskCachePartition(String partition, Promise promise) {
+        impl.clearDiskCachePartition(partition, promise);
+    }
+
+    @ReactMethod
+    public void evict(ReadableArray sources, Promise promise) {
+        impl.evict(sources, promise);
+    }
+
+    @ReactMethod
+    public void getCacheStats(Promise promise) {
+        impl.getCacheStats(promise);
+    }
+
+    // Required by NativeEventEmitter, events are emitted regardless of listeners.
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @ReactMethod
+    public void configureNetwork(ReadableMap config) {
+        impl.configureNetwork(config);
+    }
 }
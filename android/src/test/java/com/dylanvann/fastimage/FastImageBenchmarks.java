@@ -0,0 +1,32 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Shared setup of the benchmarks, which are skipped unless the tests run with
+ * `-PfastImageBenchmark=true`.
+ */
+final class FastImageBenchmarks {
+    private FastImageBenchmarks() {
+    }
+
+    static void assumeEnabled() {
+        assumeTrue("Benchmarks run with -PfastImageBenchmark=true", Boolean.getBoolean("fastimage.benchmark"));
+    }
+
+    /**
+     * Prints the median and 90th percentile of the samples.
+     */
+    static void report(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.println(String.format(Locale.US, "%s: median %.3f ms, p90 %.3f ms (%d runs)",
+                name,
+                sorted[sorted.length / 2] / 1e6,
+                sorted[(int) (sorted.length * 0.9)] / 1e6,
+                sorted.length));
+    }
+}
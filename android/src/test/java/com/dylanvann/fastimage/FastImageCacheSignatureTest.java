@@ -0,0 +1,42 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.signature.ObjectKey;
+
+import org.junit.Test;
+
+public class FastImageCacheSignatureTest {
+    private static final GlideUrl URL = new GlideUrl("https://example.com/avatar.png");
+
+    @Test
+    public void signatureIsFoundInTheCacheKey() {
+        FastImageCacheSignature signature = new FastImageCacheSignature(URL.getCacheKey(), "avatars", new ObjectKey(2));
+        Key key = FastImageCacheKeys.getDataKey(URL, signature);
+
+        FastImageCacheSignature found = FastImageCacheSignature.find(key);
+        assertSame(signature, found);
+        assertEquals("avatars", found.getPartition());
+        assertEquals(URL.getCacheKey(), found.getModel());
+    }
+
+    @Test
+    public void keysWithoutSignatureHaveNone() {
+        assertNull(FastImageCacheSignature.find(FastImageCacheKeys.getDataKey(URL, new ObjectKey(2))));
+        assertNull(FastImageCacheSignature.find(FastImageCacheKeys.getDataKey(URL, null)));
+    }
+
+    @Test
+    public void diskCacheKeyOnlyDependsOnTheWrappedSignature() {
+        assertEquals(
+                FastImageCacheKeys.getDataCacheKey(URL, new ObjectKey(2)),
+                FastImageCacheKeys.getDataCacheKey(URL, new FastImageCacheSignature(URL.getCacheKey(), "avatars", new ObjectKey(2))));
+        assertEquals(
+                FastImageCacheKeys.getDataCacheKey(URL, null),
+                FastImageCacheKeys.getDataCacheKey(URL, new FastImageCacheSignature(URL.getCacheKey(), null, null)));
+    }
+}
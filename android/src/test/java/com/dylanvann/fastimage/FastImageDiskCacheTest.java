@@ -0,0 +1,82 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.model.GlideUrl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+@RunWith(RobolectricTestRunner.class)
+public class FastImageDiskCacheTest {
+    private static final GlideUrl URL = new GlideUrl("https://example.com/feed.png");
+    private static final String MODEL = URL.getCacheKey();
+    private static final Key KEY = FastImageCacheKeys.getDataKey(URL, new FastImageCacheSignature(MODEL, null, null));
+
+    private FastImageDiskCache cache;
+
+    @Before
+    public void setUp() {
+        cache = FastImageDiskCache.get(RuntimeEnvironment.getApplication());
+        cache.clear();
+    }
+
+    @Test
+    public void cachedModelExpiresWhenFirstRequestedWithMaxAge() throws InterruptedException {
+        write();
+        cache.setMaxAge(MODEL, 1);
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!cache.isExpired(MODEL) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(cache.isExpired(MODEL));
+    }
+
+    @Test
+    public void evictForgetsTheMaxAge() throws InterruptedException {
+        cache.get(KEY);
+        cache.setMaxAge(MODEL, 1);
+        cache.evict(MODEL);
+
+        write();
+        Thread.sleep(20);
+        assertFalse(cache.isExpired(MODEL));
+    }
+
+    @Test
+    public void expiredModelGetsANewExpiryWhenFetchedAgain() throws InterruptedException {
+        cache.get(KEY);
+        cache.setMaxAge(MODEL, 1);
+        write();
+        Thread.sleep(20);
+        assertTrue(cache.isExpired(MODEL));
+
+        cache.setMaxAge(MODEL, 200);
+        assertNull(cache.get(KEY));
+        write();
+        assertFalse(cache.isExpired(MODEL));
+        Thread.sleep(300);
+        assertTrue(cache.isExpired(MODEL));
+    }
+
+    private void write() {
+        cache.put(KEY, file -> {
+            try (FileOutputStream output = new FileOutputStream(file)) {
+                output.write(new byte[]{1, 2, 3});
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+}
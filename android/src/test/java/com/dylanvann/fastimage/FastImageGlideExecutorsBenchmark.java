@@ -0,0 +1,156 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.request.FutureTarget;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * End-to-end throughput of concurrent loads against a local server with network latency, for
+ * each executor setup of {@link FastImageGlideConfig}. Thread priorities are left out, Robolectric
+ * shadows {@link android.os.Process#setThreadPriority(int)} so they would have no effect.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FastImageGlideExecutorsBenchmark {
+    private static final int LOADS = 64;
+    private static final int WARMUP_RUNS = 1;
+    private static final int RUNS = 5;
+    private static final long LATENCY_MS = 50;
+
+    private MockWebServer server;
+    private Context context;
+
+    @Before
+    public void setUp() throws IOException {
+        FastImageBenchmarks.assumeEnabled();
+        context = RuntimeEnvironment.getApplication();
+        final byte[] image = createPng(256, 256);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeadersDelay(LATENCY_MS, TimeUnit.MILLISECONDS)
+                        .setBody(new Buffer().write(image));
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null) {
+            server.shutdown();
+        }
+        Glide.tearDown();
+        FastImageGlideConfig.setSourceThreads(BuildConfig.FAST_IMAGE_SOURCE_THREADS);
+        FastImageGlideConfig.setUnlimitedNetworkExecutor(BuildConfig.FAST_IMAGE_UNLIMITED_NETWORK_EXECUTOR);
+    }
+
+    @Test
+    public void throughputPerConfiguration() throws Exception {
+        measure("defaults", 0, false);
+        measure("2 source threads", 2, false);
+        measure("8 source threads", 8, false);
+        measure("unlimited network executor", 0, true);
+    }
+
+    private void measure(String name, int sourceThreads, boolean unlimitedNetworkExecutor) throws Exception {
+        FastImageGlideConfig.setSourceThreads(sourceThreads);
+        FastImageGlideConfig.setUnlimitedNetworkExecutor(unlimitedNetworkExecutor);
+        Glide.tearDown();
+        GlideBuilder builder = new GlideBuilder();
+        FastImageGlideConfig.applyOptions(context, builder);
+        Glide.init(context, builder);
+        Glide.get(context).getRegistry().replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(
+                new OkHttpClient.Builder().dispatcher(createDispatcher()).build()));
+
+        long[] nanos = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            List<FutureTarget<Bitmap>> targets = new ArrayList<>();
+            for (int i = 0; i < LOADS; i++) {
+                targets.add(Glide.with(context)
+                        .asBitmap()
+                        .load(new GlideUrl(server.url("/" + name.hashCode() + "/" + run + "/" + i + ".png").toString()))
+                        .diskCacheStrategy(DiskCacheStrategy.NONE)
+                        .skipMemoryCache(true)
+                        .submit(128, 128));
+            }
+            awaitAll(targets);
+            for (FutureTarget<Bitmap> target : targets) {
+                target.get();
+                Glide.with(context).clear(target);
+            }
+            if (run >= 0) {
+                nanos[run] = System.nanoTime() - start;
+            }
+        }
+        FastImageBenchmarks.report(String.format(Locale.US, "%d loads, %s", LOADS, name), nanos);
+    }
+
+    // Results are delivered on the main looper, which is the test's thread.
+    private static void awaitAll(List<FutureTarget<Bitmap>> targets) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        for (FutureTarget<Bitmap> target : targets) {
+            while (!target.isDone()) {
+                if (System.nanoTime() > deadline) {
+                    throw new AssertionError("Loads did not finish");
+                }
+                ShadowLooper.idleMainLooper();
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    // No per-host limit, so the executors are the bottleneck rather than OkHttp.
+    private static okhttp3.Dispatcher createDispatcher() {
+        okhttp3.Dispatcher dispatcher = new okhttp3.Dispatcher();
+        dispatcher.setMaxRequests(LOADS);
+        dispatcher.setMaxRequestsPerHost(LOADS);
+        return dispatcher;
+    }
+
+    private static byte[] createPng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, x * y);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.bumptech.glide.load.model.GlideUrl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class FastImageHttpCacheScopeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder()
+                .cache(new Cache(folder.newFolder(), 1024 * 1024))
+                .addInterceptor(FastImageHttpCacheScope.APPLICATION_INTERCEPTOR)
+                .addNetworkInterceptor(FastImageHttpCacheScope.NETWORK_INTERCEPTOR)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void otherImagesSkipTheHttpCache() throws Exception {
+        GlideUrl url = new GlideUrl(server.url("/immutable.png").toString());
+        enqueueCacheable();
+        enqueueCacheable();
+
+        fetch(url);
+        fetch(url);
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, client.cache().writeSuccessCount());
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader("Cache-Control"));
+    }
+
+    @Test
+    public void callerCacheControlIsSentUnchanged() throws Exception {
+        enqueueCacheable();
+        Request request = new Request.Builder()
+                .url(server.url("/no-cache.png"))
+                .header("Cache-Control", "no-cache")
+                .build();
+        client.newCall(request).execute().close();
+
+        assertEquals("no-cache", server.takeRequest().getHeader("Cache-Control"));
+    }
+
+    @Test
+    public void webImagesUseTheHttpCache() throws Exception {
+        GlideUrl url = FastImageHttpCacheScope.allowHttpCache(new GlideUrl(server.url("/web.png").toString()));
+        enqueueCacheable();
+
+        fetch(url);
+        fetch(url);
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, client.cache().hitCount());
+        for (String name : server.takeRequest().getHeaders().names()) {
+            assertEquals(false, name.startsWith("X-FastImage"));
+        }
+    }
+
+    private void enqueueCacheable() {
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=3600")
+                .setBody("image"));
+    }
+
+    private void fetch(GlideUrl url) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url.toStringUrl());
+        for (Map.Entry<String, String> header : url.getHeaders().entrySet()) {
+            builder.addHeader(header.getKey(), header.getValue());
+        }
+        try (Response response = client.newCall(builder.build()).execute()) {
+            response.body().string();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+
+public class FastImageMemoryCacheTest {
+    private static final String MODEL = "https://example.com/image.png";
+
+    private final FastImageMemoryCache cache = new FastImageMemoryCache(1024);
+
+    @Test
+    public void resourcesTakenOutAreNotReported() {
+        Key key = new FakeEngineKey(MODEL, 100);
+        cache.put(key, new FakeResource(10));
+        assertTrue(cache.containsModel(MODEL));
+
+        // Glide takes the resource out while it is displayed.
+        assertNotNull(cache.remove(key));
+        assertFalse(cache.containsModel(MODEL));
+        assertEquals(0, cache.evictModel(MODEL));
+    }
+
+    @Test
+    public void resourcesPutBackAreReportedAgain() {
+        Key key = new FakeEngineKey(MODEL, 100);
+        FakeResource resource = new FakeResource(10);
+        cache.put(key, resource);
+        cache.remove(key);
+
+        cache.put(key, resource);
+        assertTrue(cache.containsModel(MODEL));
+        assertEquals(10, cache.evictModel(MODEL));
+        assertFalse(cache.containsModel(MODEL));
+    }
+
+    @Test
+    public void otherVariantsStayReported() {
+        Key small = new FakeEngineKey(MODEL, 100);
+        Key large = new FakeEngineKey(MODEL, 200);
+        cache.put(small, new FakeResource(10));
+        cache.put(large, new FakeResource(40));
+
+        cache.remove(small);
+        assertTrue(cache.containsModel(MODEL));
+        assertEquals(40, cache.evictModel(MODEL));
+    }
+
+    // Described like Glide's EngineKey.
+    private static final class FakeEngineKey implements Key {
+        private final String model;
+        private final int width;
+
+        FakeEngineKey(String model, int width) {
+            this.model = model;
+            this.width = width;
+        }
+
+        @Override
+        public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FakeEngineKey && ((FakeEngineKey) o).model.equals(model) && ((FakeEngineKey) o).width == width;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * model.hashCode() + width;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "EngineKey{model=" + model + ", width=" + width + ", height=" + width + '}';
+        }
+    }
+
+    private static final class FakeResource implements Resource<Object> {
+        private final int size;
+
+        FakeResource(int size) {
+            this.size = size;
+        }
+
+        @NonNull
+        @Override
+        public Class<Object> getResourceClass() {
+            return Object.class;
+        }
+
+        @NonNull
+        @Override
+        public Object get() {
+            return this;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public void recycle() {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.Okio;
+
+public class FastImageOkHttpProgressGlideModuleTest {
+    private static final int THREADS = 8;
+    private static final int BODY_BYTES = 512 * 1024;
+    private static final float GRANULARITY = 0.5f;
+
+    private MockWebServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        executor = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrentReadsOfOneUrlDispatchEveryStepOnce() throws Exception {
+        String url = enqueueImages(THREADS);
+        FastImageOkHttpProgressGlideModule.DispatchingProgressListener dispatcher =
+                new FastImageOkHttpProgressGlideModule.DispatchingProgressListener();
+        RecordingListener listener = new RecordingListener();
+        dispatcher.expect(url, listener);
+
+        fetchConcurrently(createClient(dispatcher), url, null);
+
+        Set<Long> steps = new HashSet<>();
+        int completions = 0;
+        for (long[] event : listener.events) {
+            long step = (long) (100f * event[0] / event[1] / GRANULARITY);
+            assertTrue("step " + step + " dispatched twice", steps.add(step));
+            if (event[0] == event[1]) {
+                completions++;
+            }
+        }
+        assertEquals(1, completions);
+        assertTrue(steps.contains((long) (100f / GRANULARITY)));
+    }
+
+    @Test
+    public void expectAndForgetWhileReading() throws Exception {
+        final String url = enqueueImages(THREADS);
+        final FastImageOkHttpProgressGlideModule.DispatchingProgressListener dispatcher =
+                new FastImageOkHttpProgressGlideModule.DispatchingProgressListener();
+        final RecordingListener listener = new RecordingListener();
+
+        // Views binding and dropping the url on the UI thread while OkHttp threads report.
+        Runnable churn = new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    dispatcher.expect(url, listener);
+                    dispatcher.forget(url);
+                }
+            }
+        };
+
+        fetchConcurrently(createClient(dispatcher), url, churn);
+
+        for (long[] event : listener.events) {
+            assertTrue(event[0] <= event[1]);
+        }
+    }
+
+    private String enqueueImages(int count) {
+        for (int i = 0; i < count; i++) {
+            server.enqueue(new MockResponse()
+                    .setBody(new Buffer().write(new byte[BODY_BYTES]))
+                    .throttleBody(16 * 1024, 1, TimeUnit.MILLISECONDS));
+        }
+        return server.url("/image.png").toString();
+    }
+
+    private static OkHttpClient createClient(FastImageOkHttpProgressGlideModule.DispatchingProgressListener dispatcher) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(FastImageOkHttpProgressGlideModule.createInterceptor(dispatcher))
+                .build();
+    }
+
+    private void fetchConcurrently(final OkHttpClient client, final String url, Runnable alongside) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        List<Future<?>> fetches = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            fetches.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Request request = new Request.Builder().url(url).build();
+                        try (Response response = client.newCall(request).execute()) {
+                            response.body().source().readAll(Okio.blackhole());
+                        }
+                    } catch (Exception e) {
+                        failed.set(true);
+                    }
+                }
+            }));
+        }
+        Future<?> other = alongside == null ? null : executor.submit(alongside);
+        start.countDown();
+        for (Future<?> fetch : fetches) {
+            fetch.get(30, TimeUnit.SECONDS);
+        }
+        if (other != null) {
+            other.cancel(true);
+        }
+        assertTrue("a fetch failed", !failed.get());
+    }
+
+    private static class RecordingListener implements FastImageProgressListener {
+        final Queue<long[]> events = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void onProgress(String key, long bytesRead, long expectedLength) {
+            events.add(new long[]{bytesRead, expectedLength});
+        }
+
+        @Override
+        public float getGranularityPercentage() {
+            return GRANULARITY;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.bumptech.glide.Glide;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Main looper time of preloading 100 sources, with `preload` and `preloadAwait`.
+ *
+ * Before, `preload` parsed and started every source in a single `runOnUiThread` block and
+ * `preloadAwait` parsed its sources on the UI thread. Both are replayed here: the old `preload`
+ * loop is posted to the main looper, and the current preloader parses on an executor that posts to
+ * it. The current paths run through the module. The time of every main looper task is counted,
+ * including Glide's callbacks, until the preloads are done.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FastImagePreloadBenchmark {
+    private static final int SOURCES = 100;
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 30;
+    // Main looper passes after a preload without completion callback, for Glide's callbacks.
+    private static final int SETTLE_PASSES = 10;
+
+    // The native maps Arguments creates can't be loaded in unit tests.
+    private MockedStatic<Arguments> arguments;
+    private Context context;
+    private FastImageViewModuleImplementation module;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int batch = 0;
+    private long mainLooperNanos;
+
+    @Before
+    public void setUp() {
+        FastImageBenchmarks.assumeEnabled();
+        arguments = Mockito.mockStatic(Arguments.class);
+        arguments.when(Arguments::createMap).thenAnswer(invocation -> new JavaOnlyMap());
+        arguments.when(Arguments::createArray).thenAnswer(invocation -> new JavaOnlyArray());
+        context = RuntimeEnvironment.getApplication();
+        module = new FastImageViewModuleImplementation(new ReactApplicationContext(context));
+    }
+
+    @After
+    public void tearDown() {
+        if (arguments != null) {
+            arguments.close();
+        }
+    }
+
+    @Test
+    public void preloadMainLooperTimePer100Sources() throws InterruptedException {
+        long[] before = new long[RUNS];
+        long[] after = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            mainLooperNanos = 0;
+            final JavaOnlyArray oldSources = createSources();
+            mainHandler.post(() -> legacyPreload(oldSources));
+            settle();
+            long beforeNanos = mainLooperNanos;
+
+            mainLooperNanos = 0;
+            module.preload(createSources());
+            // Queued behind the preload on the same executor.
+            AtomicBoolean parsed = new AtomicBoolean();
+            module.queryCache(new JavaOnlyArray(), promise(parsed));
+            idleUntil(parsed);
+            settle();
+            if (run >= 0) {
+                before[run] = beforeNanos;
+                after[run] = mainLooperNanos;
+            }
+        }
+        FastImageBenchmarks.report("preload main looper (before)", before);
+        FastImageBenchmarks.report("preload main looper (after)", after);
+    }
+
+    @Test
+    public void preloadAwaitMainLooperTimePer100Sources() throws InterruptedException {
+        long[] before = new long[RUNS];
+        long[] after = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            mainLooperNanos = 0;
+            AtomicBoolean oldResolved = new AtomicBoolean();
+            new FastImagePreloader(context, createSources(), null, promise(oldResolved)).start(mainHandler::post);
+            idleUntil(oldResolved);
+            long beforeNanos = mainLooperNanos;
+
+            mainLooperNanos = 0;
+            AtomicBoolean resolved = new AtomicBoolean();
+            module.preloadAwait(createSources(), null, promise(resolved));
+            idleUntil(resolved);
+            if (run >= 0) {
+                before[run] = beforeNanos;
+                after[run] = mainLooperNanos;
+            }
+        }
+        FastImageBenchmarks.report("preloadAwait main looper (before)", before);
+        FastImageBenchmarks.report("preloadAwait main looper (after)", after);
+    }
+
+    // The loop preload ran on the UI thread before sources were parsed off it.
+    private void legacyPreload(JavaOnlyArray sources) {
+        for (int i = 0; i < sources.size(); i++) {
+            final ReadableMap source = sources.getMap(i);
+            final FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+            Glide
+                    .with(context)
+                    .load(imageSource.getSourceForLoad())
+                    .apply(FastImageViewConverter.getOptions(context, imageSource, source, null))
+                    .preload();
+        }
+    }
+
+    private void idleMainLooper() {
+        long start = System.nanoTime();
+        ShadowLooper.idleMainLooper();
+        mainLooperNanos += System.nanoTime() - start;
+    }
+
+    private void idleUntil(AtomicBoolean done) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!done.get() && System.currentTimeMillis() < deadline) {
+            idleMainLooper();
+            Thread.sleep(1);
+        }
+        idleMainLooper();
+    }
+
+    private void settle() throws InterruptedException {
+        for (int i = 0; i < SETTLE_PASSES; i++) {
+            idleMainLooper();
+            Thread.sleep(2);
+        }
+    }
+
+    // Unique urls, only looked up in the caches so nothing goes to the network.
+    private JavaOnlyArray createSources() {
+        int id = batch++;
+        JavaOnlyArray sources = new JavaOnlyArray();
+        for (int i = 0; i < SOURCES; i++) {
+            JavaOnlyMap headers = new JavaOnlyMap();
+            headers.putString("Authorization", "Bearer token");
+            JavaOnlyMap source = new JavaOnlyMap();
+            source.putString("uri", "https://example.com/" + id + "/" + i + ".jpg");
+            source.putString("cache", "cacheOnly");
+            source.putString("priority", "low");
+            source.putMap("headers", headers);
+            source.putDouble("width", 120);
+            source.putDouble("height", 80);
+            sources.pushMap(source);
+        }
+        return sources;
+    }
+
+    private static Promise promise(final AtomicBoolean resolved) {
+        return (Promise) Proxy.newProxyInstance(
+                Promise.class.getClassLoader(),
+                new Class<?>[]{Promise.class},
+                (proxy, method, args) -> {
+                    resolved.set(true);
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,122 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class FastImagePreloaderTest {
+    private static final int ID = 7;
+
+    // The native maps Arguments creates can't be loaded in unit tests.
+    private MockedStatic<Arguments> arguments;
+
+    @Before
+    public void setUp() {
+        arguments = Mockito.mockStatic(Arguments.class);
+        arguments.when(Arguments::createMap).thenAnswer(invocation -> new JavaOnlyMap());
+        arguments.when(Arguments::createArray).thenAnswer(invocation -> new JavaOnlyArray());
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    @Test
+    public void cancelWhileParsingKeepsTheStatusOfParsedSources() throws InterruptedException {
+        final CountDownLatch parsing = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        JavaOnlyArray sources = new JavaOnlyArray() {
+            @Override
+            public ReadableMap getMap(int index) {
+                if (index == 2 && parsing.getCount() > 0) {
+                    parsing.countDown();
+                    await(cancelled);
+                }
+                return super.getMap(index);
+            }
+        };
+        sources.pushMap(source("https://example.com/0.png"));
+        JavaOnlyMap invalid = new JavaOnlyMap();
+        invalid.putDouble("uri", 1);
+        sources.pushMap(invalid);
+        sources.pushMap(source("https://example.com/2.png"));
+        sources.pushMap(source("https://example.com/3.png"));
+
+        JavaOnlyMap options = new JavaOnlyMap();
+        options.putInt("id", ID);
+        final Object[] resolved = new Object[1];
+        FastImagePreloader preloader = new FastImagePreloader(RuntimeEnvironment.getApplication(), sources, options, promise(resolved));
+        Thread[] parser = new Thread[1];
+        preloader.start(runnable -> {
+            parser[0] = new Thread(runnable);
+            parser[0].start();
+        });
+
+        await(parsing);
+        FastImagePreloader.cancel(ID);
+        ShadowLooper.idleMainLooper();
+        cancelled.countDown();
+        parser[0].join(5_000);
+        ShadowLooper.idleMainLooper();
+
+        assertNotNull(resolved[0]);
+        ReadableMap result = (ReadableMap) resolved[0];
+        assertEquals(1, result.getInt("failed"));
+        assertEquals(3, result.getInt("cancelled"));
+        ReadableArray results = result.getArray("results");
+        assertEquals(FastImagePreloader.STATUS_CANCELLED, results.getMap(0).getString("status"));
+        assertEquals(FastImagePreloader.STATUS_FAILED, results.getMap(1).getString("status"));
+        assertEquals(FastImagePreloader.STATUS_CANCELLED, results.getMap(2).getString("status"));
+        assertEquals(FastImagePreloader.STATUS_CANCELLED, results.getMap(3).getString("status"));
+    }
+
+    private static JavaOnlyMap source(String uri) {
+        JavaOnlyMap source = new JavaOnlyMap();
+        source.putString("uri", uri);
+        return source;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Keeps the value the promise was resolved with.
+    private static Promise promise(final Object[] resolved) {
+        return (Promise) Proxy.newProxyInstance(
+                Promise.class.getClassLoader(),
+                new Class<?>[]{Promise.class},
+                (proxy, method, args) -> {
+                    if ("resolve".equals(method.getName())) {
+                        resolved[0] = args[0];
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,210 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FastImageSingleFlightLoaderTest {
+    private static final byte[] BODY = new byte[64 * 1024];
+
+    static {
+        for (int i = 0; i < BODY.length; i++) {
+            BODY[i] = (byte) i;
+        }
+    }
+
+    private final FakeLoader network = new FakeLoader();
+    private final FastImageSingleFlightLoader loader = new FastImageSingleFlightLoader(network);
+
+    @Test
+    public void fetchersJoiningBeforeTheResponseShareIt() throws IOException {
+        GlideUrl url = new GlideUrl("https://example.com/joined.png");
+        RecordingCallback leader = load(url);
+        RecordingCallback waiter = load(url);
+        assertEquals(1, network.fetchers.size());
+
+        network.fetchers.get(0).respond(BODY);
+        assertArrayEquals(BODY, readFully(leader.data));
+        assertNotNull(waiter.data);
+        assertArrayEquals(BODY, readFully(waiter.data));
+        assertEquals(1, network.fetchers.size());
+    }
+
+    @Test
+    public void bodyIsNotCopiedWithoutWaiters() {
+        GlideUrl url = new GlideUrl("https://example.com/alone.png");
+        RecordingCallback leader = load(url);
+
+        network.fetchers.get(0).respond(BODY);
+        assertSame(network.fetchers.get(0).stream, leader.data);
+    }
+
+    @Test
+    public void fetchersStartingAfterTheResponseFetchOnTheirOwn() {
+        GlideUrl url = new GlideUrl("https://example.com/late.png");
+        load(url);
+        network.fetchers.get(0).respond(BODY);
+
+        RecordingCallback late = load(url);
+        assertEquals(2, network.fetchers.size());
+        network.fetchers.get(1).respond(BODY);
+        assertSame(network.fetchers.get(1).stream, late.data);
+    }
+
+    @Test
+    public void waitersFetchOnTheirOwnWhenTheLeaderFails() {
+        GlideUrl url = new GlideUrl("https://example.com/failed.png");
+        RecordingCallback leader = load(url);
+        RecordingCallback waiter = load(url);
+
+        network.fetchers.get(0).fail();
+        assertNotNull(leader.error);
+        assertEquals(2, network.fetchers.size());
+        network.fetchers.get(1).respond(BODY);
+        assertSame(network.fetchers.get(1).stream, waiter.data);
+    }
+
+    @Test
+    public void waitersFetchOnTheirOwnWhenTheLeaderStopsEarly() throws IOException {
+        GlideUrl url = new GlideUrl("https://example.com/partial.png");
+        RecordingCallback leader = load(url);
+        RecordingCallback waiter = load(url);
+
+        network.fetchers.get(0).respond(BODY);
+        leader.data.read(new byte[16]);
+        leader.data.close();
+        assertNull(waiter.data);
+        assertEquals(2, network.fetchers.size());
+    }
+
+    @Test
+    public void cancelledWaitersGetNothing() throws IOException {
+        GlideUrl url = new GlideUrl("https://example.com/cancelled.png");
+        RecordingCallback leader = load(url);
+        ModelLoader.LoadData<InputStream> waiterData = loader.buildLoadData(url, 100, 100, new Options());
+        RecordingCallback waiter = new RecordingCallback();
+        waiterData.fetcher.loadData(Priority.NORMAL, waiter);
+        waiterData.fetcher.cancel();
+
+        network.fetchers.get(0).respond(BODY);
+        readFully(leader.data);
+        assertNull(waiter.data);
+    }
+
+    private RecordingCallback load(GlideUrl url) {
+        ModelLoader.LoadData<InputStream> loadData = loader.buildLoadData(url, 100, 100, new Options());
+        RecordingCallback callback = new RecordingCallback();
+        loadData.fetcher.loadData(Priority.NORMAL, callback);
+        return callback;
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static class RecordingCallback implements DataFetcher.DataCallback<InputStream> {
+        @Nullable
+        InputStream data;
+        @Nullable
+        Exception error;
+
+        @Override
+        public void onDataReady(@Nullable InputStream data) {
+            this.data = data;
+        }
+
+        @Override
+        public void onLoadFailed(@NonNull Exception e) {
+            error = e;
+        }
+    }
+
+    // Stands in for the OkHttp loader, every fetch is answered by the test.
+    private static class FakeLoader implements ModelLoader<GlideUrl, InputStream> {
+        final List<FakeFetcher> fetchers = new ArrayList<>();
+
+        @Override
+        public LoadData<InputStream> buildLoadData(@NonNull GlideUrl model, int width, int height, @NonNull Options options) {
+            return new LoadData<>(model, new FakeFetcher(this));
+        }
+
+        @Override
+        public boolean handles(@NonNull GlideUrl model) {
+            return true;
+        }
+    }
+
+    private static class FakeFetcher implements DataFetcher<InputStream> {
+        private final FakeLoader loader;
+        @Nullable
+        private DataCallback<? super InputStream> callback;
+        @Nullable
+        InputStream stream;
+
+        FakeFetcher(FakeLoader loader) {
+            this.loader = loader;
+        }
+
+        void respond(byte[] body) {
+            stream = new ByteArrayInputStream(body);
+            callback.onDataReady(stream);
+        }
+
+        void fail() {
+            callback.onLoadFailed(new IOException("failed"));
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            this.callback = callback;
+            loader.fetchers.add(this);
+        }
+
+        @Override
+        public void cleanup() {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.REMOTE;
+        }
+    }
+}
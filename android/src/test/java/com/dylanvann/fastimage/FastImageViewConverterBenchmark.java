@@ -0,0 +1,120 @@
+package com.dylanvann.fastimage;
+
+import android.content.Context;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Time of 1000 source parses and option builds, as done by every view update and preload.
+ * Sources parsed before are served from the parsed source cache, new ones are parsed as before
+ * it existed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FastImageViewConverterBenchmark {
+    private static final int CALLS = 1000;
+    // Fewer than the parsed source cache holds, like the rows of a list.
+    private static final int DISTINCT_SOURCES = 100;
+    private static final int WARMUP_RUNS = 10;
+    private static final int RUNS = 50;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        FastImageBenchmarks.assumeEnabled();
+        context = RuntimeEnvironment.getApplication();
+    }
+
+    @Test
+    public void getHeadersPer1000Calls() {
+        JavaOnlyMap[] sources = createSources(0);
+        long[] nanos = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                FastImageViewConverter.getHeaders(sources[i % DISTINCT_SOURCES]);
+            }
+            if (run >= 0) {
+                nanos[run] = System.nanoTime() - start;
+            }
+        }
+        FastImageBenchmarks.report("getHeaders x" + CALLS, nanos);
+    }
+
+    @Test
+    public void getImageSourcePer1000Calls() {
+        JavaOnlyMap[] sources = createSources(0);
+        long[] cached = new long[RUNS];
+        long[] uncached = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                FastImageViewConverter.getImageSource(context, sources[i % DISTINCT_SOURCES]);
+            }
+            long cachedNanos = System.nanoTime() - start;
+
+            // Unique urls, every call misses the cache.
+            JavaOnlyMap[] fresh = createSources(CALLS, run + WARMUP_RUNS + 1);
+            start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                FastImageViewConverter.getImageSource(context, fresh[i]);
+            }
+            long uncachedNanos = System.nanoTime() - start;
+
+            if (run >= 0) {
+                cached[run] = cachedNanos;
+                uncached[run] = uncachedNanos;
+            }
+        }
+        FastImageBenchmarks.report("getImageSource x" + CALLS + ", parsed every time (before)", uncached);
+        FastImageBenchmarks.report("getImageSource x" + CALLS + ", parsed source cache (after)", cached);
+    }
+
+    @Test
+    public void getOptionsPer1000Calls() {
+        JavaOnlyMap[] sources = createSources(0);
+        FastImageSource[] imageSources = new FastImageSource[DISTINCT_SOURCES];
+        for (int i = 0; i < DISTINCT_SOURCES; i++) {
+            imageSources[i] = FastImageViewConverter.getImageSource(context, sources[i]);
+        }
+        long[] nanos = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                int index = i % DISTINCT_SOURCES;
+                FastImageViewConverter.getOptions(context, imageSources[index], sources[index], null);
+            }
+            if (run >= 0) {
+                nanos[run] = System.nanoTime() - start;
+            }
+        }
+        FastImageBenchmarks.report("getOptions x" + CALLS, nanos);
+    }
+
+    private static JavaOnlyMap[] createSources(int run) {
+        return createSources(DISTINCT_SOURCES, run);
+    }
+
+    private static JavaOnlyMap[] createSources(int count, int run) {
+        JavaOnlyMap[] sources = new JavaOnlyMap[count];
+        for (int i = 0; i < count; i++) {
+            JavaOnlyMap headers = new JavaOnlyMap();
+            headers.putString("Authorization", "Bearer token");
+            headers.putString("Accept", "image/webp");
+            headers.putString("X-Client", "feed");
+            JavaOnlyMap source = new JavaOnlyMap();
+            source.putString("uri", "https://example.com/" + run + "/" + i + ".jpg");
+            source.putString("cache", i % 2 == 0 ? "immutable" : "cacheOnly");
+            source.putString("priority", i % 3 == 0 ? "high" : "normal");
+            source.putMap("headers", headers);
+            sources[i] = source;
+        }
+        return sources;
+    }
+}
@@ -0,0 +1,79 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class FastImageViewConverterTest {
+    private static final String URI = "https://example.com/converter.png";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+    }
+
+    @Test
+    public void sameSourceIsParsedOnce() {
+        JavaOnlyMap headers = new JavaOnlyMap();
+        headers.putString("Authorization", "Bearer a");
+        assertSame(
+                FastImageViewConverter.getImageSource(context, source(headers)),
+                FastImageViewConverter.getImageSource(context, source(headers)));
+    }
+
+    @Test
+    public void nullHeaderDoesNotShareTheSourceOfANullString() {
+        JavaOnlyMap missing = new JavaOnlyMap();
+        missing.putNull("Authorization");
+        JavaOnlyMap text = new JavaOnlyMap();
+        text.putString("Authorization", "null");
+
+        FastImageSource withoutHeader = FastImageViewConverter.getImageSource(context, source(missing));
+        FastImageSource withHeader = FastImageViewConverter.getImageSource(context, source(text));
+
+        assertNotSame(withoutHeader, withHeader);
+        assertEquals("null", headers(withHeader).get("Authorization"));
+    }
+
+    @Test
+    public void separatorsInValuesDoNotShareASource() {
+        JavaOnlyMap split = new JavaOnlyMap();
+        split.putString("A", "b");
+        split.putString("C", "d");
+        JavaOnlyMap joined = new JavaOnlyMap();
+        joined.putString("A", "b\nC:d");
+
+        FastImageSource splitSource = FastImageViewConverter.getImageSource(context, source(split));
+        FastImageSource joinedSource = FastImageViewConverter.getImageSource(context, source(joined));
+
+        assertNotSame(splitSource, joinedSource);
+        assertEquals("d", headers(splitSource).get("C"));
+        assertEquals(null, headers(joinedSource).get("C"));
+    }
+
+    private static JavaOnlyMap source(JavaOnlyMap headers) {
+        JavaOnlyMap source = new JavaOnlyMap();
+        source.putString("uri", URI);
+        source.putMap("headers", headers);
+        return source;
+    }
+
+    private static Map<String, String> headers(FastImageSource source) {
+        return source.getHeaders().getHeaders();
+    }
+}
@@ -0,0 +1,100 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import com.bumptech.glide.load.model.GlideUrl;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class FastImageViewModuleImplementationTest {
+    private static final String URI = "https://example.com/query.png";
+
+    // The native maps Arguments creates can't be loaded in unit tests.
+    private MockedStatic<Arguments> arguments;
+    private Context context;
+    private FastImageViewModuleImplementation module;
+
+    @Before
+    public void setUp() {
+        arguments = Mockito.mockStatic(Arguments.class);
+        arguments.when(Arguments::createMap).thenAnswer(invocation -> new JavaOnlyMap());
+        arguments.when(Arguments::createArray).thenAnswer(invocation -> new JavaOnlyArray());
+        context = RuntimeEnvironment.getApplication();
+        module = new FastImageViewModuleImplementation(new ReactApplicationContext(context));
+        FastImageDiskCache.get(context).clear();
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    @Test
+    public void queryCacheLeavesTheCachedImageAlone() throws InterruptedException {
+        JavaOnlyMap source = new JavaOnlyMap();
+        source.putString("uri", URI);
+        source.putDouble("maxAge", 0.001);
+        FastImageSource imageSource = FastImageViewConverter.getImageSource(context, source);
+        GlideUrl url = imageSource.getGlideUrl();
+        FastImageDiskCache cache = FastImageDiskCache.get(context);
+        cache.put(
+                FastImageCacheKeys.getDataKey(url, FastImageViewConverter.getCacheSignature(context, imageSource, source)),
+                file -> {
+                    try (FileOutputStream output = new FileOutputStream(file)) {
+                        output.write(new byte[]{1, 2, 3});
+                        return true;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                });
+
+        assertEquals("disk", query(source).getString(URI));
+        Thread.sleep(50);
+        // A max age recorded by the query would have expired the image by now.
+        assertFalse(cache.isExpired(url.getCacheKey()));
+        assertEquals("disk", query(source).getString(URI));
+    }
+
+    private ReadableMap query(ReadableMap source) throws InterruptedException {
+        JavaOnlyArray sources = new JavaOnlyArray();
+        sources.pushMap(source);
+        final CountDownLatch resolved = new CountDownLatch(1);
+        final ReadableMap[] result = new ReadableMap[1];
+        module.queryCache(sources, (Promise) Proxy.newProxyInstance(
+                Promise.class.getClassLoader(),
+                new Class<?>[]{Promise.class},
+                (proxy, method, args) -> {
+                    if ("resolve".equals(method.getName())) {
+                        result[0] = (ReadableMap) args[0];
+                        resolved.countDown();
+                    }
+                    return null;
+                }));
+        assertTrue(resolved.await(5, TimeUnit.SECONDS));
+        return result[0];
+    }
+}
@@ -0,0 +1,96 @@
+package com.dylanvann.fastimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.app.Application;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.R;
+import com.bumptech.glide.RequestManager;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.uimanager.ThemedReactContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class FastImageViewWithUrlTest {
+    private final FastImageViewManager manager = new FastImageViewManager();
+    private final Map<String, List<FastImageViewWithUrl>> viewsForUrls = new HashMap<>();
+    private RequestManager requestManager;
+    private FastImageViewWithUrl view;
+
+    @Before
+    public void setUp() {
+        Application application = RuntimeEnvironment.getApplication();
+        requestManager = Glide.with(application);
+        view = new FastImageViewWithUrl(new ThemedReactContext(new ReactApplicationContext(application), application));
+        view.setLoadEventsEnabled(false);
+        view.setProgressEventsEnabled(false);
+    }
+
+    @Test
+    public void updateWithEqualPropsKeepsTheRequest() {
+        update("https://example.com/a.png");
+        Object request = getRequest();
+        assertNotNull(request);
+        long avoidedReloads = FastImageViewWithUrl.getAvoidedReloadCount();
+
+        update("https://example.com/a.png");
+        assertSame(request, getRequest());
+        assertEquals(avoidedReloads + 1, FastImageViewWithUrl.getAvoidedReloadCount());
+    }
+
+    @Test
+    public void updateWithAnotherSourceReloads() {
+        update("https://example.com/a.png");
+        Object request = getRequest();
+        long avoidedReloads = FastImageViewWithUrl.getAvoidedReloadCount();
+
+        update("https://example.com/b.png");
+        assertNotSame(request, getRequest());
+        assertEquals(avoidedReloads, FastImageViewWithUrl.getAvoidedReloadCount());
+    }
+
+    @Test
+    public void clearedViewReloadsWithEqualProps() {
+        update("https://example.com/a.png");
+        view.clearView(requestManager);
+        long avoidedReloads = FastImageViewWithUrl.getAvoidedReloadCount();
+
+        update("https://example.com/a.png");
+        assertEquals(avoidedReloads, FastImageViewWithUrl.getAvoidedReloadCount());
+    }
+
+    @Test
+    public void droppedViewNoLongerRefinesProgress() {
+        view.setProgressGranularity(0.1f);
+        assertEquals(0.1f, FastImageViewWithUrl.getMinProgressGranularity(), 0f);
+
+        view.clearView(requestManager);
+        assertEquals(FastImageViewWithUrl.DEFAULT_PROGRESS_GRANULARITY, FastImageViewWithUrl.getMinProgressGranularity(), 0f);
+    }
+
+    // A new map on every update, like the bridge hands over.
+    private void update(String uri) {
+        JavaOnlyMap source = new JavaOnlyMap();
+        source.putString("uri", uri);
+        view.setSource(source);
+        view.onAfterUpdate(manager, requestManager, viewsForUrls);
+    }
+
+    private Object getRequest() {
+        return view.getTag(R.id.glide_custom_view_target_tag);
+    }
+}
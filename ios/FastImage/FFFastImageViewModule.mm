@@ -6,10 +6,35 @@
 #import <SDWebImage/SDWebImagePrefetcher.h>
 #import <SDWebImage/SDWebImageDownloader.h>
 
+@interface FFFastImageViewModule ()
+
+@property (nonatomic, strong) NSMutableDictionary<NSNumber *, void (^)(void)> *preloadCancellers;
+
+@end
+
 @implementation FFFastImageViewModule
 
 RCT_EXPORT_MODULE(FastImageViewModule)
 
+- (instancetype)init
+{
+    if (self = [super init]) {
+        _preloadCancellers = [NSMutableDictionary new];
+    }
+    return self;
+}
+
++ (BOOL)requiresMainQueueSetup
+{
+    return NO;
+}
+
+// Prefetch callbacks and preload bookkeeping run on the main queue.
+- (dispatch_queue_t)methodQueue
+{
+    return dispatch_get_main_queue();
+}
+
 RCT_EXPORT_METHOD(preload:(nonnull NSArray<FFFastImageSource *> *)sources)
 {
     NSMutableArray *urls = [NSMutableArray arrayWithCapacity:sources.count];
@@ -26,6 +51,7 @@ RCT_EXPORT_METHOD(preload:(nonnull NSArray<FFFastImageSource *> *)sources)
 
 RCT_REMAP_METHOD(preloadAwait,
                  preloadAwait:(nonnull NSArray<FFFastImageSource *> *)sources
+                 options:(NSDictionary *)options
                  resolve:(RCTPromiseResolveBlock)resolve
                  reject:(RCTPromiseRejectBlock)reject)
 {
@@ -42,16 +68,66 @@ RCT_REMAP_METHOD(preloadAwait,
         [urls addObject:source.url];
     }];
 
-    SDWebImagePrefetcher *prefetcher = [SDWebImagePrefetcher sharedImagePrefetcher];
-    [prefetcher prefetchURLs:urls
-                progress:nil
-                completed:^(NSUInteger finishedCount, NSUInteger skippedCount) {
-        resolve(@{ @"finished": @(finishedCount), @"skipped": @(skippedCount) });
+    // A prefetcher per call so concurrency limits and cancellation don't affect other batches.
+    SDWebImagePrefetcher *prefetcher = [SDWebImagePrefetcher new];
+    NSInteger maxConcurrency = [options[@"maxConcurrency"] integerValue];
+    if (maxConcurrency > 0) {
+        prefetcher.maxConcurrentPrefetchCount = maxConcurrency;
+    }
+
+    NSNumber *batchId = options[@"id"];
+    NSUInteger total = urls.count;
+    __block NSUInteger finished = 0;
+    __block BOOL resolved = NO;
+    __block SDWebImagePrefetchToken *token = nil;
+    // Only called on the main queue.
+    void (^finish)(NSDictionary *) = ^(NSDictionary *result) {
+        if (resolved) {
+            return;
+        }
+        resolved = YES;
+        if (batchId != nil) {
+            [self.preloadCancellers removeObjectForKey:batchId];
+        }
+        resolve(result);
+    };
+    void (^cancel)(BOOL) = ^(BOOL timedOut) {
+        if (resolved) {
+            return;
+        }
+        [token cancel];
+        finish(@{ @"finished": @(finished), @"skipped": @0, @"cancelled": @(total - finished), @"timedOut": @(timedOut) });
+    };
+
+    token = [prefetcher prefetchURLs:urls
+                            progress:^(NSUInteger finishedCount, NSUInteger totalCount) {
+        finished = finishedCount;
+    }
+                           completed:^(NSUInteger finishedCount, NSUInteger skippedCount) {
+        finish(@{ @"finished": @(finishedCount - skippedCount), @"skipped": @0, @"failed": @(skippedCount), @"timedOut": @NO });
     }];
+
+    if (batchId != nil) {
+        self.preloadCancellers[batchId] = ^{ cancel(NO); };
+    }
+    double timeout = [options[@"timeout"] doubleValue];
+    if (timeout > 0) {
+        dispatch_after(dispatch_time(DISPATCH_TIME_NOW, (int64_t)(timeout * NSEC_PER_MSEC)), dispatch_get_main_queue(), ^{
+            cancel(YES);
+        });
+    }
+}
+
+RCT_EXPORT_METHOD(cancelPreload:(double)batchId)
+{
+    void (^cancel)(void) = self.preloadCancellers[@((NSInteger)batchId)];
+    if (cancel != nil) {
+        cancel();
+    }
 }
 
 RCT_REMAP_METHOD(queryCache,
-                 queryCache:(nonnull NSArray<NSString *> *)urlStrings
+                 queryCache:(nonnull NSArray<FFFastImageSource *> *)sources
                  resolve:(RCTPromiseResolveBlock)resolve
                  reject:(RCTPromiseRejectBlock)reject)
 {
@@ -59,23 +135,24 @@ RCT_REMAP_METHOD(queryCache,
     SDWebImageManager *manager = [SDWebImageManager sharedManager];
 
     NSMutableDictionary *result = [NSMutableDictionary new];
-    __block NSInteger remaining = urlStrings.count;
+    __block NSInteger remaining = sources.count;
 
     if (remaining == 0) {
         resolve(result);
         return;
     }
 
-    for (NSString *urlString in urlStrings) {
-        NSURL *url = [NSURL URLWithString:urlString];
+    for (FFFastImageSource *source in sources) {
+        NSURL *url = source.url;
+        NSString *urlString = url.absoluteString;
         NSString *key = [manager cacheKeyForURL:url];
 
         [cache containsImageForKey:key
                cacheType:SDImageCacheTypeAll
                completion:^(SDImageCacheType containsCacheType) {
-            if (containsCacheType == SDImageCacheTypeMemory) {
+            if (urlString != nil && containsCacheType == SDImageCacheTypeMemory) {
                 result[urlString] = @"memory";
-            } else if (containsCacheType == SDImageCacheTypeDisk) {
+            } else if (urlString != nil && containsCacheType == SDImageCacheTypeDisk) {
                 result[urlString] = @"disk";
             }
             if (--remaining == 0) {
@@ -97,6 +174,92 @@ RCT_EXPORT_METHOD(clearDiskCache:(RCTPromiseResolveBlock)resolve reject:(RCTProm
         resolve(NULL);
     }];
 }
+
+RCT_EXPORT_METHOD(clearDiskCachePartition:(NSString *)partition resolve:(RCTPromiseResolveBlock)resolve reject:(RCTPromiseRejectBlock)reject)
+{
+    // All images share SDWebImage's disk cache, partitions are Android only.
+    reject(@"E_UNSUPPORTED", @"Disk cache partitions are not supported on iOS", nil);
+}
+RCT_REMAP_METHOD(evict,
+                 evict:(nonnull NSArray<FFFastImageSource *> *)sources
+                 resolve:(RCTPromiseResolveBlock)resolve
+                 reject:(RCTPromiseRejectBlock)reject)
+{
+    SDImageCache *cache = [SDImageCache sharedImageCache];
+    SDWebImageManager *manager = [SDWebImageManager sharedManager];
+    NSFileManager *fileManager = [NSFileManager defaultManager];
+
+    __block unsigned long long diskBytes = 0;
+    dispatch_group_t group = dispatch_group_create();
+    for (FFFastImageSource *source in sources) {
+        if (source.url == nil) {
+            continue;
+        }
+        NSString *key = [manager cacheKeyForURL:source.url];
+        NSString *path = [cache cachePathForKey:key];
+        if (path != nil) {
+            diskBytes += [[fileManager attributesOfItemAtPath:path error:nil] fileSize];
+        }
+        dispatch_group_enter(group);
+        [cache removeImageForKey:key cacheType:SDImageCacheTypeAll completion:^{
+            dispatch_group_leave(group);
+        }];
+    }
+    dispatch_group_notify(group, dispatch_get_main_queue(), ^{
+        // SDWebImage doesn't expose the memory cost of single images.
+        resolve(@{
+            @"bytesFreed": @(diskBytes),
+            @"memoryBytesFreed": @0,
+            @"diskBytesFreed": @(diskBytes),
+            @"httpCacheBytesFreed": @0,
+        });
+    });
+}
+
+RCT_EXPORT_METHOD(getCacheStats:(RCTPromiseResolveBlock)resolve reject:(RCTPromiseRejectBlock)reject)
+{
+    SDImageCache *cache = SDImageCache.sharedImageCache;
+    [cache calculateSizeWithCompletionBlock:^(NSUInteger fileCount, NSUInteger totalSize) {
+        // SDWebImage doesn't expose the current memory cost or hit counts.
+        resolve(@{
+            @"memoryCacheSize": @0,
+            @"memoryCacheMaxSize": @(cache.config.maxMemoryCost),
+            @"bitmapPoolSize": @0,
+            @"bitmapPoolMaxSize": @0,
+            @"diskCacheSize": @(totalSize),
+            @"diskCacheEntries": @(fileCount),
+            @"httpCacheSize": @0,
+            @"httpCacheHits": @0,
+            @"memoryHits": @0,
+            @"diskHits": @0,
+            @"networkLoads": @0,
+            @"localLoads": @0,
+            @"failures": @0,
+            @"deduplicatedFetches": @0,
+        });
+    }];
+}
+
+// Required by NativeEventEmitter, memory trim events are Android only.
+RCT_EXPORT_METHOD(addListener:(NSString *)eventName)
+{
+}
+
+RCT_EXPORT_METHOD(removeListeners:(double)count)
+{
+}
+
+RCT_EXPORT_METHOD(configureNetwork:(NSDictionary *)config)
+{
+    SDWebImageDownloaderConfig *downloaderConfig = [SDWebImageDownloader sharedDownloader].config;
+    if (config[@"maxRequests"] != nil) {
+        downloaderConfig.maxConcurrentDownloads = [config[@"maxRequests"] integerValue];
+    }
+    if (config[@"readTimeout"] != nil) {
+        downloaderConfig.downloadTimeout = [config[@"readTimeout"] doubleValue] / 1000.0;
+    }
+}
+
 #ifdef RCT_NEW_ARCH_ENABLED
 - (std::shared_ptr<facebook::react::TurboModule>)getTurboModule:
     (const facebook::react::ObjCTurboModule::InitParams &)params
@@ -1,6 +1,7 @@
 import codegenNativeComponent from 'react-native/Libraries/Utilities/codegenNativeComponent'
 import type { ViewProps, ColorValue } from 'react-native'
 import type {
+    Double,
     Float,
     WithDefault,
     BubblingEventHandler,
@@ -9,7 +10,10 @@ import type {
 
 type Headers = ReadonlyArray<Readonly<{ name: string; value: string }>>
 type Priority = WithDefault<'low' | 'normal' | 'high', 'normal'>
-type CacheControl = WithDefault<'immutable' | 'web' | 'cacheOnly', 'web'>
+type CacheControl = WithDefault<
+    'immutable' | 'web' | 'cacheOnly' | 'staleWhileRevalidate',
+    'web'
+>
 type Transition = WithDefault<'fade' | 'none', 'none'>
 
 type FastImageSource = Readonly<{
@@ -17,6 +21,10 @@ type FastImageSource = Readonly<{
     headers?: Headers
     priority?: Priority
     cache?: CacheControl
+    maxStale?: Double
+    maxAge?: Double
+    cachePartition?: string
+    diskCacheStrategy?: string
 }>
 
 type OnErrorEvent = Readonly<{
@@ -47,7 +55,16 @@ interface NativeProps extends ViewProps {
     >
     tintColor?: ColorValue
     blurRadius?: Int32
+    maxDecodeWidth?: WithDefault<Int32, 0>
+    maxDecodeHeight?: WithDefault<Int32, 0>
+    // Size in dp known from the style before layout, lets Android start loading right away.
+    layoutWidth?: WithDefault<Float, 0>
+    layoutHeight?: WithDefault<Float, 0>
     transition?: Transition
+    progressInterval?: WithDefault<Int32, 0>
+    progressGranularity?: WithDefault<Float, 0.5>
+    loadEventsEnabled?: WithDefault<boolean, true>
+    progressEventsEnabled?: WithDefault<boolean, true>
 }
 
 export default codegenNativeComponent<NativeProps>('FastImageView')
@@ -1,13 +1,33 @@
 import type { TurboModule } from 'react-native'
 import { TurboModuleRegistry } from 'react-native'
-import { Source, PreloadAwaitResult, FastImageQueryCacheResult } from './index'
+import type { UnsafeObject } from 'react-native/Libraries/Types/CodegenTypes'
+import {
+    Source,
+    PreloadAwaitResult,
+    FastImageQueryCacheResult,
+    CacheStats,
+    EvictResult,
+} from './index'
 
 export interface Spec extends TurboModule {
     preload: (sources: Source[]) => void
-    preloadAwait(sources: Source[]): Promise<PreloadAwaitResult>
-    queryCache(urls: string[]): Promise<FastImageQueryCacheResult>
+    // options is PreloadOptions plus the id used by cancelPreload
+    preloadAwait(
+        sources: Source[],
+        options: UnsafeObject,
+    ): Promise<PreloadAwaitResult>
+    cancelPreload: (id: number) => void
+    queryCache(sources: Source[]): Promise<FastImageQueryCacheResult>
     clearMemoryCache: () => Promise<void>
     clearDiskCache: () => Promise<void>
+    clearDiskCachePartition: (partition: string) => Promise<void>
+    evict: (sources: Source[]) => Promise<EvictResult>
+    getCacheStats: () => Promise<CacheStats>
+    // NativeEventEmitter
+    addListener: (eventName: string) => void
+    removeListeners: (count: number) => void
+    // NetworkConfig, untyped so it reaches native as a plain map
+    configureNetwork: (config: UnsafeObject) => void
 }
 
 export default TurboModuleRegistry.getEnforcing<Spec>('FastImageViewModule')
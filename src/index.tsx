@@ -16,6 +16,8 @@ import {
     ColorValue,
     ImageResolvedAssetSource,
     requireNativeComponent,
+    NativeEventEmitter,
+    EmitterSubscription,
 } from 'react-native'
 
 const isFabricEnabled = (global as any)?.nativeFabricUIManager != null
@@ -52,7 +54,7 @@ const transition = {
     none: 'none',
 } as const
 
-type Cache = 'immutable' | 'web' | 'cacheOnly'
+type Cache = 'immutable' | 'web' | 'cacheOnly' | 'staleWhileRevalidate'
 
 const cacheControl = {
     // Ignore headers, use uri as cache key, fetch only if not in cache.
@@ -61,13 +63,38 @@ const cacheControl = {
     web: 'web',
     // Only load from cache.
     cacheOnly: 'cacheOnly',
+    // Show the cached image right away, revalidate it in the background (Android only).
+    staleWhileRevalidate: 'staleWhileRevalidate',
 } as const
 
+export type DiskCacheStrategy = 'automatic' | 'data' | 'resource' | 'all' | 'none'
+
 export type Source = {
     uri?: string
     headers?: { [key: string]: string }
     priority?: Priority
     cache?: Cache
+    // Seconds a cached copy may be shown with `staleWhileRevalidate` before it must be refetched.
+    maxStale?: number
+    // Seconds the image is kept in the disk cache after it was downloaded (Android only).
+    maxAge?: number
+    // Disk cache partition configured in Gradle, e.g. `avatars` (Android only).
+    cachePartition?: string
+    // What the disk cache keeps: the downloaded bytes (`data`), the decoded image at the
+    // displayed size (`resource`), both (`all`) or nothing (`none`). Android only.
+    diskCacheStrategy?: DiskCacheStrategy
+}
+
+export type PreloadSource = Source & {
+    // Size in dp the image will be displayed at, so the decoded image is cached for that size.
+    width?: number
+    height?: number
+    resizeMode?: ResizeMode
+    // Same as the view's props, so the preloaded image matches the one the view loads.
+    maxDecodeWidth?: number
+    maxDecodeHeight?: number
+    // `disk` only downloads the image, `memory` (default) also decodes it.
+    preloadMode?: 'memory' | 'disk'
 }
 
 export interface OnLoadEvent {
@@ -115,6 +142,21 @@ export interface FastImageProps extends AccessibilityProps, ViewProps {
 
     onProgress?(event: OnProgressEvent): void
 
+    /**
+     * ProgressInterval
+     *
+     * Minimum time in milliseconds between two `onProgress` events. The first and the last
+     * event are always delivered. Android only.
+     */
+    progressInterval?: number
+
+    /**
+     * ProgressGranularity
+     *
+     * Minimum change in percent between two `onProgress` events, defaults to 0.5. Android only.
+     */
+    progressGranularity?: number
+
     onLoad?(event: OnLoadEvent): void
 
     onError?(event: OnErrorEvent): void
@@ -151,6 +193,15 @@ export interface FastImageProps extends AccessibilityProps, ViewProps {
      */
     blurRadius?: number
 
+    /**
+     * Upper bounds in pixels for the decoded bitmap (Android only).
+     *
+     * The image is decoded at most at this size, keeping the view's aspect ratio, and scaled up
+     * when drawn. Useful for large originals shown in views with no need for full resolution.
+     */
+    maxDecodeWidth?: number
+    maxDecodeHeight?: number
+
     /**
      * A unique identifier for this element to be used in UI Automation testing scripts.
      */
@@ -185,6 +236,44 @@ const resolveDefaultSource = (
     return defaultSource
 }
 
+const toNumber = (...values: unknown[]): number => {
+    const value = values.find((v) => v !== undefined && v !== null)
+    return typeof value === 'number' ? value : 0
+}
+
+// Size of the image inside the container when the style fixes it, so Android can start loading
+// before layout. Null for sizes that are only known after layout (flex, percentages).
+const getLayoutSize = (
+    style: StyleProp<ImageStyle>,
+): { width: number; height: number } | null => {
+    const flattened = StyleSheet.flatten(style)
+    if (
+        !flattened ||
+        typeof flattened.width !== 'number' ||
+        typeof flattened.height !== 'number'
+    ) {
+        return null
+    }
+    const {
+        borderWidth,
+        borderLeftWidth,
+        borderStartWidth,
+        borderRightWidth,
+        borderEndWidth,
+        borderTopWidth,
+        borderBottomWidth,
+    } = flattened
+    const width =
+        flattened.width -
+        toNumber(borderLeftWidth, borderStartWidth, borderWidth) -
+        toNumber(borderRightWidth, borderEndWidth, borderWidth)
+    const height =
+        flattened.height -
+        toNumber(borderTopWidth, borderWidth) -
+        toNumber(borderBottomWidth, borderWidth)
+    return width > 0 && height > 0 ? { width, height } : null
+}
+
 function FastImageBase({
     source,
     defaultSource,
@@ -195,6 +284,8 @@ function FastImageBase({
     onLoad,
     onError,
     onLoadEnd,
+    progressInterval,
+    progressGranularity,
     style,
     fallback,
     children,
@@ -251,6 +342,7 @@ function FastImageBase({
     const resolvedDefaultSource = resolveDefaultSource(defaultSource)
     const resolvedDefaultSourceAsString =
         resolvedDefaultSource !== null ? String(resolvedDefaultSource) : null
+    const layoutSize = Platform.OS === 'android' ? getLayoutSize(style) : null
 
     return (
         <View style={[styles.imageContainer, style]} ref={forwardedRef}>
@@ -268,6 +360,15 @@ function FastImageBase({
                 resizeMode={resizeModeProp}
                 transition={transitionProp}
                 blurRadius={blurRadius}
+                progressInterval={progressInterval}
+                progressGranularity={progressGranularity}
+                layoutWidth={layoutSize?.width}
+                layoutHeight={layoutSize?.height}
+                // Native skips building and dispatching events nobody listens to.
+                loadEventsEnabled={
+                    !!(onLoadStart || onLoad || onError || onLoadEnd)
+                }
+                progressEventsEnabled={!!onProgress}
             />
             {children}
         </View>
@@ -284,23 +385,138 @@ const FastImageComponent: React.ComponentType<FastImageProps> = forwardRef(
 
 FastImageComponent.displayName = 'FastImage'
 
-export type FastImageCacheStatusIOS = 'memory' | 'disk';
-export type FastImageQueryCacheResult =
-  | Record<string, FastImageCacheStatusIOS>   // iOS
-  | Record<string, 'cached'>;                 // Android
+export type FastImageCacheStatus = 'memory' | 'disk'
+/** @deprecated Both platforms report the same statuses, use FastImageCacheStatus. */
+export type FastImageCacheStatusIOS = FastImageCacheStatus
+// Keyed by uri, uncached uris are missing.
+export type FastImageQueryCacheResult = Record<string, FastImageCacheStatus>
+
+export type PreloadStatus =
+    | 'memory'
+    | 'disk'
+    | 'network'
+    | 'local'
+    | 'failed'
+    | 'skipped'
+    | 'cancelled'
+
+export type PreloadSourceResult = {
+    uri?: string
+    status: PreloadStatus
+    // Milliseconds from the start of the request until it finished.
+    duration: number
+    error?: string
+}
+
+export type PreloadAwaitResult = {
+    // Sources that made it into the cache.
+    finished: number
+    skipped: number
+    failed?: number
+    cancelled?: number
+    timedOut?: boolean
+    duration?: number
+    // Per source, in the order they were passed (Android only).
+    results?: PreloadSourceResult[]
+}
+
+export type PreloadOptions = {
+    // Maximum number of sources loaded at the same time, no limit by default.
+    maxConcurrency?: number
+    // Milliseconds after which unfinished sources are cancelled, no limit by default.
+    timeout?: number
+}
 
-export type PreloadAwaitResult = { finished: number; skipped: number };
+export type PreloadAwaitPromise = Promise<PreloadAwaitResult> & {
+    // Cancels the sources that did not finish yet, the promise resolves with them as `cancelled`.
+    cancel: () => void
+}
+
+export type EvictResult = {
+    bytesFreed: number
+    memoryBytesFreed: number
+    diskBytesFreed: number
+    // Android only, the HTTP cache used by `cache: "web"` images.
+    httpCacheBytesFreed: number
+}
+
+export type DiskCachePartitionStats = {
+    size: number
+    maxSize: number
+    entries: number
+}
+
+// Sizes are in bytes, counts are cumulative since the app started.
+export type CacheStats = {
+    memoryCacheSize: number
+    memoryCacheMaxSize: number
+    // Android only.
+    bitmapPoolSize: number
+    bitmapPoolMaxSize: number
+    diskCacheSize: number
+    diskCacheEntries: number
+    // Android only, the HTTP cache used by `cache: "web"` images.
+    httpCacheSize: number
+    httpCacheHits: number
+    // Android only.
+    memoryHits: number
+    diskHits: number
+    networkLoads: number
+    localLoads: number
+    failures: number
+    deduplicatedFetches: number
+    // Android only, by partition name, the default disk cache is `default`.
+    diskCachePartitions: Record<string, DiskCachePartitionStats>
+    // Android only, see the warmup section of docs/glide-config.md.
+    warmedEntries: number
+    warmedEntriesUsed: number
+    // Android only, prop updates that kept the current request since nothing affecting the
+    // load changed.
+    avoidedReloads: number
+}
+
+export type MemoryTrimEvent = {
+    // `low`, `critical` or `background`
+    step: 'low' | 'critical' | 'background'
+    // ComponentCallbacks2 trim level
+    level: number
+    bytesReleased: number
+    memoryCacheSize: number
+    bitmapPoolSize: number
+}
+
+export type NetworkConfig = {
+    maxRequests?: number
+    maxRequestsPerHost?: number
+    connectionPoolSize?: number
+    keepAliveDuration?: number
+    preferHttp2?: boolean
+    connectTimeout?: number
+    readTimeout?: number
+    httpCacheSize?: number
+}
 
 export interface FastImageStaticProperties {
     resizeMode: typeof resizeMode
     priority: typeof priority
     cacheControl: typeof cacheControl
     transition: typeof transition
-    preload: (sources: Source[]) => void
-    preloadAwait(sources: Source[]): Promise<PreloadAwaitResult>
-    queryCache(urls: string[]): Promise<FastImageQueryCacheResult>
+    preload: (sources: PreloadSource[]) => void
+    preloadAwait(
+        sources: PreloadSource[],
+        options?: PreloadOptions,
+    ): PreloadAwaitPromise
+    queryCache(
+        sources: Array<string | Source>,
+    ): Promise<FastImageQueryCacheResult>
     clearMemoryCache: () => Promise<void>
-    clearDiskCache: () => Promise<void>
+    clearDiskCache: (partition?: string) => Promise<void>
+    evict: (sources: Array<string | Source>) => Promise<EvictResult>
+    getCacheStats: () => Promise<CacheStats>
+    configureNetwork: (config: NetworkConfig) => void
+    addMemoryTrimListener: (
+        listener: (event: MemoryTrimEvent) => void,
+    ) => EmitterSubscription
 }
 
 const FastImage: React.ComponentType<FastImageProps> &
@@ -314,15 +530,52 @@ FastImage.priority = priority
 
 FastImage.transition = transition
 
-FastImage.preload = (sources: Source[]) => FastImageViewModule.preload(sources)
+FastImage.preload = (sources: PreloadSource[]) =>
+    FastImageViewModule.preload(sources)
+
+let nextPreloadId = 1
+
+FastImage.preloadAwait = (
+    sources: PreloadSource[],
+    options: PreloadOptions = {},
+) => {
+    const id = nextPreloadId++
+    const promise = FastImageViewModule.preloadAwait(sources, {
+        ...options,
+        id,
+    }) as PreloadAwaitPromise
+    promise.cancel = () => FastImageViewModule.cancelPreload(id)
+    return promise
+}
 
-FastImage.preloadAwait = (sources: Source[]) => FastImageViewModule.preloadAwait(sources)
+const toSource = (source: string | Source): Source =>
+    typeof source === 'string' ? { uri: source } : source
 
-FastImage.queryCache = (urls: string[]) => FastImageViewModule.queryCache(urls)
+FastImage.queryCache = (sources: Array<string | Source>) =>
+    FastImageViewModule.queryCache(sources.map(toSource))
 
 FastImage.clearMemoryCache = () => FastImageViewModule.clearMemoryCache()
 
-FastImage.clearDiskCache = () => FastImageViewModule.clearDiskCache()
+FastImage.clearDiskCache = (partition?: string) =>
+    partition === undefined
+        ? FastImageViewModule.clearDiskCache()
+        : FastImageViewModule.clearDiskCachePartition(partition)
+
+FastImage.evict = (sources: Array<string | Source>) =>
+    FastImageViewModule.evict(sources.map(toSource))
+
+FastImage.getCacheStats = () => FastImageViewModule.getCacheStats()
+
+FastImage.configureNetwork = (config: NetworkConfig) =>
+    FastImageViewModule.configureNetwork(config)
+
+FastImage.addMemoryTrimListener = (
+    listener: (event: MemoryTrimEvent) => void,
+) =>
+    new NativeEventEmitter(FastImageViewModule).addListener(
+        'onFastImageMemoryTrim',
+        listener,
+    )
 
 const styles = StyleSheet.create({
     imageContainer: {